@@ -0,0 +1,73 @@
+package com.esteban.products.benchmarks;
+
+import com.esteban.products.repositories.OrderRepository;
+import com.esteban.products.status.OrderStatus;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to read one page of expired order ids while {@code p_order} holds a growing number of paid and recent orders
+ * and a fixed number of expired ones. With the {@code (status, created)} index the scan does not depend on the table size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ExpiryScanBenchmark {
+
+    private static final int EXPIRED = 5000;
+
+    private static final int PAGE_SIZE = 500;
+
+    private static final long FIRST_ID = 1_000_000_000L;
+
+    @Param({"100000", "1000000"})
+    private int orders;
+
+    private ConfigurableApplicationContext context;
+
+    private OrderRepository orderRepository;
+
+    private Date expiration;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ProductsContext.start("products.expiry.safety-net-delay=3600000");
+        orderRepository = context.getBean(OrderRepository.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        long now = System.currentTimeMillis();
+        expiration = new Date(now - TimeUnit.MINUTES.toMillis(30));
+        // Expired CREATED orders first, then recent CREATED orders mixed with old PAID and CANCELLED ones
+        jdbcTemplate.update("insert into p_order (id, status, created) " +
+                        "select x, case when x < ? or mod(x, 3) = 0 then 0 else mod(x, 3) end, " +
+                        "case when x >= ? and mod(x, 3) = 0 then cast(? as timestamp) else cast(? as timestamp) end " +
+                        "from system_range(?, ?)",
+                FIRST_ID + EXPIRED, FIRST_ID + EXPIRED, new Date(now), new Date(expiration.getTime() - 1),
+                FIRST_ID, FIRST_ID + orders - 1);
+        jdbcTemplate.execute("analyze table p_order");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Long> scanExpired() {
+        return orderRepository.findIdsByStatusAndCreatedBefore(OrderStatus.CREATED, expiration, PageRequest.of(0, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public long countExpired() {
+        return orderRepository.countByStatusAndCreatedBefore(OrderStatus.CREATED, expiration);
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.esteban.products.benchmarks;
+
+import com.esteban.products.model.OrderDto;
+import com.esteban.products.services.HotStockCoalescer;
+import com.esteban.products.services.OrderService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class HotProductBenchmark {
+
+    @Param({"ledger", "database", "coalesced"})
+    private String stockMode;
+
+    private ConfigurableApplicationContext context;
+
+    private OrderService orderService;
+
+    private OrderDto hotProductOrder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ProductsContext.start("products.stock.ledger.enabled=" + stockMode.equals("ledger"));
+        orderService = context.getBean(OrderService.class);
+        List<Long> productIds = ProductsContext.createProducts(context, 1);
+        if(stockMode.equals("coalesced")) {
+            context.getBean(HotStockCoalescer.class).flag(productIds.get(0));
+        }
+        hotProductOrder = ProductsContext.order(productIds);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public OrderDto hotProduct() {
+        return orderService.create(hotProductOrder);
+    }
+
+}
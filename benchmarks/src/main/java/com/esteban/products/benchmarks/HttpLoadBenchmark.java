@@ -0,0 +1,72 @@
+package com.esteban.products.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-per-request load on the REST endpoints with 64 concurrent clients against a Tomcat pool of
+ * 16 platform threads, or against virtual threads when {@code virtualThreads} is set and the JDK supports them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(64)
+public class HttpLoadBenchmark {
+
+    @Param({"false", "true"})
+    private boolean virtualThreads;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient client;
+
+    private HttpRequest getProduct;
+
+    private HttpRequest createOrder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ProductsContext.startWeb("server.tomcat.threads.max=16",
+                "spring.threads.virtual.enabled=" + virtualThreads);
+        List<Long> productIds = ProductsContext.createProducts(context, 1);
+        String baseUri = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        getProduct = HttpRequest.newBuilder(URI.create(baseUri + "/products/" + productIds.get(0)))
+                .GET()
+                .build();
+        createOrder = HttpRequest.newBuilder(URI.create(baseUri + "/orders"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"items\": [{\"productId\": " + productIds.get(0) + ", \"quantity\": 1}]}"))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int getProduct() throws IOException, InterruptedException {
+        return client.send(getProduct, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int createOrder() throws IOException, InterruptedException {
+        return client.send(createOrder, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.esteban.products.benchmarks;
+
+import com.esteban.products.model.OrderDto;
+import com.esteban.products.services.OrderService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderCreateBenchmark {
+
+    private static final int LINES = 20;
+
+    @Param({"1", "50"})
+    private int allocationSize;
+
+    private ConfigurableApplicationContext context;
+
+    private OrderService orderService;
+
+    private List<Long> productIds;
+
+    private OrderDto multiLineOrder;
+
+    private OrderDto hotProductOrder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ProductsContext.start("spring.jpa.properties.products.id.allocation-size=" + allocationSize);
+        orderService = context.getBean(OrderService.class);
+        productIds = ProductsContext.createProducts(context, LINES + 1);
+        multiLineOrder = ProductsContext.order(productIds.subList(1, LINES + 1));
+        hotProductOrder = ProductsContext.order(productIds.subList(0, 1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public OrderDto singleLine() {
+        Long productId = productIds.get(1 + ThreadLocalRandom.current().nextInt(LINES));
+        return orderService.create(ProductsContext.order(Collections.singletonList(productId)));
+    }
+
+    @Benchmark
+    public OrderDto multiLine() {
+        return orderService.create(multiLineOrder);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public OrderDto hotProduct() {
+        return orderService.create(hotProductOrder);
+    }
+
+}
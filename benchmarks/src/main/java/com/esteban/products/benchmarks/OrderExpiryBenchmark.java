@@ -0,0 +1,66 @@
+package com.esteban.products.benchmarks;
+
+import com.esteban.products.model.OrderDto;
+import com.esteban.products.services.OrderService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OrderExpiryBenchmark {
+
+    private static final int BATCH = 1000;
+
+    @Param({"10000", "50000"})
+    private int backlog;
+
+    private ConfigurableApplicationContext context;
+
+    private OrderService orderService;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private OrderDto order;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ProductsContext.start("products.expiry.time-budget=3600000");
+        orderService = context.getBean(OrderService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        order = ProductsContext.order(ProductsContext.createProducts(context, 3));
+    }
+
+    @Setup(Level.Invocation)
+    public void createBacklog() {
+        List<OrderDto> orders = new ArrayList<>(BATCH);
+        for(int i = 0; i < BATCH; i++) {
+            orders.add(order);
+        }
+        for(int created = 0; created < backlog; created += BATCH) {
+            orderService.createAll(orders);
+        }
+        jdbcTemplate.update("update p_order set created = ? where status = 0",
+                new Timestamp(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void expireBacklog() {
+        orderService.expireOrders();
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.esteban.products.benchmarks;
+
+import com.esteban.products.model.ItemDto;
+import com.esteban.products.services.OrderLines;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-order work of merging and walking the order lines, against the boxed maps and sets it replaced.
+ * Run with the GC profiler, as {@link BenchmarkRunner} does, to compare {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderLinesBenchmark {
+
+    @Param({"1", "20", "100"})
+    private int lines;
+
+    private List<ItemDto> items;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        items = new ArrayList<>(lines);
+        Random random = new Random(42);
+        for(int i = 0; i < lines; i++) {
+            items.add(ItemDto.builder()
+                    .productId(1_000L + random.nextInt(Math.max(1, lines * 3 / 4)))
+                    .quantity(1 + random.nextInt(5))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public long primitive() {
+        OrderLines orderLines = OrderLines.of(items);
+        long checksum = 0;
+        for(int i = 0; i < orderLines.size(); i++) {
+            checksum += orderLines.productId(i) * orderLines.quantity(i);
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public long boxed() {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        items.forEach(i -> quantities.merge(i.getProductId(), i.getQuantity(), Integer::sum));
+        Set<Long> productIds = new HashSet<>();
+        items.forEach(i -> productIds.add(i.getProductId()));
+        List<ItemDto> reserved = new ArrayList<>(items.size());
+        reserved.addAll(items);
+        Map<Long, Integer> deltas = new HashMap<>();
+        quantities.forEach((id, quantity) -> deltas.put(id, -quantity));
+        long checksum = productIds.size() + reserved.size();
+        for(Map.Entry<Long, Integer> delta : deltas.entrySet()) {
+            checksum -= delta.getKey() * delta.getValue();
+        }
+        return checksum;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.esteban.products.benchmarks;
+
+import com.esteban.products.model.OrderDto;
+import com.esteban.products.services.OrderService;
+import com.esteban.products.status.OrderStatus;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderStatusBenchmark {
+
+    private ConfigurableApplicationContext context;
+
+    private OrderService orderService;
+
+    private OrderDto order;
+
+    private Long orderId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ProductsContext.start();
+        orderService = context.getBean(OrderService.class);
+        order = ProductsContext.order(ProductsContext.createProducts(context, 5));
+    }
+
+    @Setup(Level.Invocation)
+    public void createOrder() {
+        orderId = orderService.create(order).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public OrderDto pay() {
+        return orderService.updateStatus(orderId, OrderStatus.PAID);
+    }
+
+    @Benchmark
+    public OrderDto cancel() {
+        return orderService.updateStatus(orderId, OrderStatus.CANCELLED);
+    }
+
+}
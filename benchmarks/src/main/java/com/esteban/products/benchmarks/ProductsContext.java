@@ -0,0 +1,86 @@
+package com.esteban.products.benchmarks;
+
+import com.esteban.products.ProductsApplication;
+import com.esteban.products.entities.Product;
+import com.esteban.products.model.ItemDto;
+import com.esteban.products.model.OrderDto;
+import com.esteban.products.repositories.ProductRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+final class ProductsContext {
+
+    static final int STOCK = 1_000_000_000;
+
+    private ProductsContext() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        return start(WebApplicationType.NONE, properties);
+    }
+
+    static ConfigurableApplicationContext startWeb(String... properties) {
+        List<String> all = new ArrayList<>();
+        all.add("server.port=0");
+        Collections.addAll(all, properties);
+        return start(WebApplicationType.SERVLET, all.toArray(new String[0]));
+    }
+
+    static ConfigurableApplicationContext startFile(Path dataDir, String... properties) {
+        List<String> args = new ArrayList<>();
+        args.add("--products.data-dir=" + dataDir);
+        args.add("--logging.level.root=WARN");
+        for(String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(ProductsApplication.class)
+                .profiles("file")
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(new String[0]));
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String... properties) {
+        List<String> all = new ArrayList<>();
+        all.add("spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        all.add("logging.level.root=WARN");
+        Collections.addAll(all, properties);
+        return new SpringApplicationBuilder(ProductsApplication.class)
+                .web(webApplicationType)
+                .properties(all.toArray(new String[0]))
+                .run();
+    }
+
+    static List<Long> createProducts(ConfigurableApplicationContext context, int count) {
+        ProductRepository productRepository = context.getBean(ProductRepository.class);
+        List<Product> products = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            products.add(Product.builder()
+                    .name("Product " + i)
+                    .price(1.5)
+                    .stock(STOCK)
+                    .build());
+        }
+        List<Long> ids = new ArrayList<>();
+        productRepository.saveAll(products).forEach(p -> ids.add(p.getId()));
+        return ids;
+    }
+
+    static OrderDto order(List<Long> productIds) {
+        List<ItemDto> items = new ArrayList<>(productIds.size());
+        productIds.forEach(id -> items.add(ItemDto.builder()
+                .productId(id)
+                .quantity(1)
+                .build()));
+        return OrderDto.builder()
+                .items(items)
+                .build();
+    }
+
+}
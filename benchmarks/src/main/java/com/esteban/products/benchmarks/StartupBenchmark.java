@@ -0,0 +1,66 @@
+package com.esteban.products.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to start the application on the file profile with an existing catalog, with and without warm start.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final int CHUNK = 1000;
+
+    @Param({"100000"})
+    private int catalogSize;
+
+    @Param({"false", "true"})
+    private boolean warmStart;
+
+    private Path dataDir;
+
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("products-startup");
+        try(ConfigurableApplicationContext populate = ProductsContext.startFile(dataDir, "products.warm-start.enabled=false")) {
+            for(int created = 0; created < catalogSize; created += CHUNK) {
+                ProductsContext.createProducts(populate, Math.min(CHUNK, catalogSize - created));
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop() {
+        if(context != null) {
+            context.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try(Stream<Path> files = Files.walk(dataDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public ConfigurableApplicationContext start() {
+        context = ProductsContext.startFile(dataDir, "products.warm-start.enabled=" + warmStart);
+        return context;
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.esteban.products.benchmarks;
+
+import com.esteban.products.model.ItemDto;
+import com.esteban.products.model.OrderDto;
+import com.esteban.products.status.OrderStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding cost of an order with 20 lines in every negotiated format.
+ * The encoded size is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+
+    private OrderDto order;
+
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        switch(format) {
+            case "cbor":
+                objectMapper = new CBORMapper();
+                break;
+            case "smile":
+                objectMapper = new SmileMapper();
+                break;
+            default:
+                objectMapper = new ObjectMapper();
+        }
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        List<ItemDto> items = new ArrayList<>();
+        for(long i = 0; i < 20; i++) {
+            items.add(ItemDto.builder()
+                    .productId(i)
+                    .quantity(3)
+                    .build());
+        }
+        order = OrderDto.builder()
+                .id(123456L)
+                .status(OrderStatus.CREATED)
+                .created(new Date())
+                .items(items)
+                .build();
+        encoded = objectMapper.writeValueAsBytes(order);
+        System.out.println(format + " order size: " + encoded.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        return objectMapper.writeValueAsBytes(order);
+    }
+
+    @Benchmark
+    public OrderDto read() throws IOException {
+        return objectMapper.readValue(encoded, OrderDto.class);
+    }
+
+}
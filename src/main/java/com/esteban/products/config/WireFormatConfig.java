@@ -0,0 +1,51 @@
+package com.esteban.products.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Binary encodings negotiated through the {@code Accept} and {@code Content-Type} headers
+ * ({@code application/cbor} and {@code application/x-jackson-smile}). They are registered right after the
+ * JSON converter, so JSON stays the default, and share the object mapper settings of the JSON one.
+ */
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+
+    @Autowired
+    public WireFormatConfig(ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder) {
+        this.objectMapperBuilder = objectMapperBuilder;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(c -> c instanceof MappingJackson2CborHttpMessageConverter
+                || c instanceof MappingJackson2SmileHttpMessageConverter);
+        int json = 0;
+        while(json < converters.size() && !(converters.get(json) instanceof MappingJackson2HttpMessageConverter)) {
+            json++;
+        }
+        int position = Math.min(json + 1, converters.size());
+        converters.add(position, new MappingJackson2SmileHttpMessageConverter(
+                getBuilder().factory(new SmileFactory()).build()));
+        converters.add(position, new MappingJackson2CborHttpMessageConverter(
+                getBuilder().factory(new CBORFactory()).build()));
+    }
+
+    private Jackson2ObjectMapperBuilder getBuilder() {
+        return objectMapperBuilder.getIfAvailable(Jackson2ObjectMapperBuilder::new);
+    }
+
+}
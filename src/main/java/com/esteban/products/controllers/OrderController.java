@@ -1,27 +1,95 @@
 package com.esteban.products.controllers;
 
+import com.esteban.products.model.BatchOrderResult;
+import com.esteban.products.model.KeysetPage;
 import com.esteban.products.model.OrderDto;
+import com.esteban.products.model.OrderTicket;
+import com.esteban.products.services.IdempotencyService;
+import com.esteban.products.services.OrderIntakeService;
 import com.esteban.products.services.OrderService;
+import com.esteban.products.status.OrderStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Date;
+import java.util.List;
 
 @RestController
 @RequestMapping("/orders")
 public class OrderController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final OrderService orderService;
 
+    private final IdempotencyService idempotencyService;
+
+    private final OrderIntakeService orderIntakeService;
+
+    private final ObjectMapper objectMapper;
+
     @Autowired
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, IdempotencyService idempotencyService,
+                           OrderIntakeService orderIntakeService, ObjectMapper objectMapper) {
         this.orderService = orderService;
+        this.idempotencyService = idempotencyService;
+        this.orderIntakeService = orderIntakeService;
+        this.objectMapper = objectMapper;
+    }
+
+    @GetMapping
+    public KeysetPage<OrderDto> getPage(@RequestParam(required = false) Long afterId,
+                                        @RequestParam(defaultValue = "100") int limit,
+                                        @RequestParam(required = false) OrderStatus status,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to) {
+        return orderService.getPage(afterId, limit, status, from, to);
+    }
+
+    @GetMapping("/{id}")
+    public OrderDto get(@PathVariable Long id) {
+        return orderService.get(id);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(required = false) OrderStatus status,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to) {
+        StreamingResponseBody body = out -> orderService.export(status, from, to, o -> writeLine(out, o));
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
     }
 
 
     @PostMapping
-    public OrderDto create(@RequestBody OrderDto orderDto) {
-        return orderService.create(orderDto);
+    public ResponseEntity<?> create(@RequestBody OrderDto orderDto,
+                                    @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        if(idempotencyKey != null) {
+            return ResponseEntity.ok(idempotencyService.create(idempotencyKey, orderDto));
+        }
+        if(orderIntakeService.isEnabled()) {
+            return ResponseEntity.accepted().body(orderIntakeService.submit(orderDto));
+        }
+        return ResponseEntity.ok(orderService.create(orderDto));
+    }
+
+    @GetMapping("/tickets/{id}")
+    public OrderTicket getTicket(@PathVariable String id) {
+        return orderIntakeService.getTicket(id);
+    }
+
+    @PostMapping("/batch")
+    public List<BatchOrderResult> createAll(@RequestBody List<OrderDto> orderDtos) {
+        return orderService.createAll(orderDtos);
     }
 
     @PatchMapping("/{id}")
@@ -32,4 +100,13 @@ public class OrderController {
         return orderService.updateStatus(id, orderDto.getStatus());
     }
 
+    private void writeLine(OutputStream out, OrderDto orderDto) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(orderDto));
+            out.write('\n');
+        } catch(IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
 }
@@ -1,17 +1,46 @@
 package com.esteban.products.controllers;
 
+import com.esteban.products.model.ImportReport;
+import com.esteban.products.model.KeysetPage;
 import com.esteban.products.model.ProductDto;
+import com.esteban.products.services.ProductImportService;
 import com.esteban.products.services.ProductService;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.InputStream;
 
 @RestController
 @RequestMapping("/products")
 public class ProductController {
 
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
     private final ProductService productService;
 
-    public ProductController(ProductService productService) {
+    private final ProductImportService productImportService;
+
+    public ProductController(ProductService productService, ProductImportService productImportService) {
         this.productService = productService;
+        this.productImportService = productImportService;
+    }
+
+    @GetMapping
+    public KeysetPage<ProductDto> getPage(@RequestParam(required = false) Long afterId,
+                                          @RequestParam(defaultValue = "100") int limit) {
+        return productService.getPage(afterId, limit);
+    }
+
+    @GetMapping(path = "/stock-events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStockEvents() {
+        return productService.subscribeStockLevels();
+    }
+
+    @GetMapping("/{id}")
+    public ProductDto get(@PathVariable Long id) {
+        return productService.get(id);
     }
 
     @PostMapping
@@ -19,6 +48,16 @@ public class ProductController {
         return productService.create(product);
     }
 
+    @PostMapping(path = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ImportReport importJson(InputStream body) throws IOException {
+        return productImportService.importJson(body);
+    }
+
+    @PostMapping(path = "/bulk", consumes = TEXT_CSV_VALUE)
+    public ImportReport importCsv(InputStream body) throws IOException {
+        return productImportService.importCsv(body);
+    }
+
     @DeleteMapping("/{id}")
     public void delete(@PathVariable Long id) {
         productService.delete(id);
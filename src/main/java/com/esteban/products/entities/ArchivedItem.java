@@ -0,0 +1,29 @@
+package com.esteban.products.entities;
+
+import lombok.*;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+
+@Entity(name = "p_archived_item")
+@Table(indexes = @Index(name = "idx_archived_item_order", columnList = "orderId"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchivedItem {
+
+    @Id
+    private Long id;
+
+    private Long orderId;
+
+    private Long productId;
+
+    private int quantity;
+
+    @Column(precision = 19, scale = 2)
+    private BigDecimal unitPrice;
+
+}
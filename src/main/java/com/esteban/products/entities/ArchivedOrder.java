@@ -0,0 +1,28 @@
+package com.esteban.products.entities;
+
+import com.esteban.products.status.OrderStatus;
+import lombok.*;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+@Entity(name = "p_archived_order")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchivedOrder {
+
+    @Id
+    private Long id;
+
+    private OrderStatus status;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date created;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date archived;
+
+}
@@ -0,0 +1,45 @@
+package com.esteban.products.entities;
+
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+@Entity(name = "p_expiry_lease")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExpiryLease implements Persistable<Integer> {
+
+    @Id
+    private Integer shard;
+
+    private String owner;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date expires;
+
+    @Transient
+    @Builder.Default
+    private boolean stored = false;
+
+    @Override
+    public Integer getId() {
+        return shard;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !stored;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        stored = true;
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.esteban.products.entities;
+
+import lombok.*;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+@Entity(name = "p_expiry_node")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExpiryNode {
+
+    @Id
+    private String id;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date expires;
+
+}
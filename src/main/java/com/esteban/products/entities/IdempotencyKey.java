@@ -0,0 +1,49 @@
+package com.esteban.products.entities;
+
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+@Entity(name = "p_idempotency_key")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyKey implements Persistable<String> {
+
+    @Id
+    @Column(name = "idempotency_key")
+    private String key;
+
+    private Long orderId;
+
+    @Column(length = 64)
+    private String fingerprint;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date created;
+
+    @Transient
+    @Builder.Default
+    private boolean stored = false;
+
+    @Override
+    public String getId() {
+        return key;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !stored;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        stored = true;
+    }
+
+}
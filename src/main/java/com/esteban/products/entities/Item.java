@@ -2,12 +2,11 @@ package com.esteban.products.entities;
 
 import lombok.*;
 
-import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.Id;
-import javax.persistence.OneToOne;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
 
 @Entity(name = "p_item")
+@Table(indexes = @Index(name = "idx_item_product", columnList = "product_id"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -16,12 +15,15 @@ import javax.persistence.OneToOne;
 public class Item {
 
     @Id
-    @GeneratedValue
+    @PooledSequence(name = "item_seq")
     private Long id;
 
     private int quantity;
 
-    @OneToOne
+    @Column(precision = 19, scale = 2)
+    private BigDecimal unitPrice;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     private Product product;
 
 }
@@ -4,26 +4,31 @@ import com.esteban.products.status.OrderStatus;
 import lombok.Getter;
 import lombok.Setter;
 
-import javax.persistence.*;
+import jakarta.persistence.*;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 @Entity(name = "p_order")
+@Table(indexes = @Index(name = "idx_order_status_created", columnList = "status, created"))
 @Getter
 @Setter
 public class Order {
 
     @Id
-    @GeneratedValue
+    @PooledSequence(name = "order_seq")
     private Long id;
 
     private OrderStatus status;
 
-    @OneToMany(fetch = FetchType.EAGER)
+    @OneToMany
+    @JoinTable(indexes = @Index(name = "idx_order_items_order", columnList = "p_order_id"))
     private List<Item> items = new ArrayList<>();
 
     @Temporal(TemporalType.TIMESTAMP)
     private Date created;
 
+    @Version
+    private long version;
+
 }
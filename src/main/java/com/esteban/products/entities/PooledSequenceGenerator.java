@@ -0,0 +1,45 @@
+package com.esteban.products.entities;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.lang.reflect.Member;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Sequence generator behind {@link PooledSequence}, using the pooled-lo optimizer, whose allocation size is read from the
+ * {@code products.id.<sequence>.allocation-size} or {@code products.id.allocation-size} JPA property.
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    private static final String PREFIX = "products.id.";
+
+    private static final String ALLOCATION_SIZE = "allocation-size";
+
+    private static final String DEFAULT_ALLOCATION_SIZE = "50";
+
+    private final String sequenceName;
+
+    public PooledSequenceGenerator(PooledSequence config, Member member, CustomIdGeneratorCreationContext context) {
+        this.sequenceName = config.name();
+    }
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        params.setProperty(SEQUENCE_PARAM, sequenceName);
+        Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        Object allocationSize = settings.get(PREFIX + sequenceName + "." + ALLOCATION_SIZE);
+        if(allocationSize == null) {
+            allocationSize = settings.get(PREFIX + ALLOCATION_SIZE);
+        }
+        params.setProperty(INCREMENT_PARAM, allocationSize == null ? DEFAULT_ALLOCATION_SIZE : allocationSize.toString());
+        params.putIfAbsent(OPT_PARAM, "pooled-lo");
+        super.configure(type, params, serviceRegistry);
+    }
+
+}
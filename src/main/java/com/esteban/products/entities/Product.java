@@ -2,9 +2,9 @@ package com.esteban.products.entities;
 
 import lombok.*;
 
-import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.Id;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Version;
 
 @Entity(name = "p_product")
 @Getter
@@ -15,7 +15,7 @@ import javax.persistence.Id;
 public class Product {
 
     @Id
-    @GeneratedValue
+    @PooledSequence(name = "product_seq")
     private Long id;
 
     private String name;
@@ -24,4 +24,7 @@ public class Product {
 
     private double price;
 
+    @Version
+    private long version;
+
 }
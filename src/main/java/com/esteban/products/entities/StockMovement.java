@@ -0,0 +1,30 @@
+package com.esteban.products.entities;
+
+import com.esteban.products.status.StockMovementReason;
+import lombok.*;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+@Entity(name = "p_stock_movement")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockMovement {
+
+    @Id
+    @PooledSequence(name = "stock_movement_seq")
+    private Long id;
+
+    private Long productId;
+
+    private int delta;
+
+    private StockMovementReason reason;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date created;
+
+}
@@ -16,4 +16,11 @@ public class MissingMessage {
 
     private List<ItemDto> items;
 
+    public static MissingMessage of(MissingStockException ex) {
+        return MissingMessage.builder()
+                .error("There are quantity products unavailable")
+                .items(ex.getItems())
+                .build();
+    }
+
 }
@@ -15,12 +15,8 @@ public class ProductsResponseEntityExceptionHandler extends ResponseEntityExcept
     @ExceptionHandler({ MissingStockException.class })
     public ResponseEntity<MissingMessage> handleAccessDeniedException(
             MissingStockException ex, WebRequest request) {
-        MissingMessage missingMessage = MissingMessage.builder()
-                .error("There are quantity products unavailable")
-                .items(ex.getItems())
-                .build();
         return new ResponseEntity<MissingMessage>(
-                missingMessage, new HttpHeaders(), HttpStatus.CONFLICT);
+                MissingMessage.of(ex), new HttpHeaders(), HttpStatus.CONFLICT);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.esteban.products.model;
+
+import com.esteban.products.error.MissingMessage;
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchOrderResult {
+
+    private OrderDto order;
+
+    private MissingMessage error;
+
+}
@@ -0,0 +1,28 @@
+package com.esteban.products.model;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportReport {
+
+    private long received;
+
+    private long created;
+
+    private long updated;
+
+    private long failed;
+
+    private long elapsedMillis;
+
+    @Builder.Default
+    private List<String> errors = new ArrayList<>();
+
+}
@@ -2,6 +2,8 @@ package com.esteban.products.model;
 
 import lombok.*;
 
+import java.math.BigDecimal;
+
 @Getter
 @Setter
 @NoArgsConstructor
@@ -13,4 +15,8 @@ public class ItemDto {
 
     private int quantity;
 
+    private BigDecimal unitPrice;
+
+    private BigDecimal total;
+
 }
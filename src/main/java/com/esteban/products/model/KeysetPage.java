@@ -0,0 +1,18 @@
+package com.esteban.products.model;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class KeysetPage<T> {
+
+    private List<T> items;
+
+    private Long nextAfterId;
+
+}
@@ -2,6 +2,8 @@ package com.esteban.products.model;
 
 import com.esteban.products.status.OrderStatus;
 import lombok.*;
+
+import java.math.BigDecimal;
 import java.util.Date;
 import java.util.List;
 
@@ -20,4 +22,6 @@ public class OrderDto {
 
     private Date created;
 
+    private BigDecimal total;
+
 }
@@ -0,0 +1,22 @@
+package com.esteban.products.model;
+
+import com.esteban.products.error.MissingMessage;
+import com.esteban.products.status.TicketStatus;
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderTicket {
+
+    private String id;
+
+    private TicketStatus status;
+
+    private OrderDto order;
+
+    private MissingMessage error;
+
+}
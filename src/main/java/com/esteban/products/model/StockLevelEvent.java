@@ -0,0 +1,19 @@
+package com.esteban.products.model;
+
+import com.esteban.products.status.StockLevel;
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockLevelEvent {
+
+    private Long productId;
+
+    private int stock;
+
+    private StockLevel level;
+
+}
@@ -0,0 +1,32 @@
+package com.esteban.products.repositories;
+
+import com.esteban.products.entities.ArchivedOrder;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface ArchivedOrderRepository extends CrudRepository<ArchivedOrder, Long> {
+
+    @Query("select o.id as orderId, o.status as status, o.created as created, i.productId as productId, " +
+            "i.quantity as quantity, i.unitPrice as unitPrice from p_archived_order o left join p_archived_item i on i.orderId = o.id " +
+            "where o.id in :ids order by o.id, i.id")
+    List<OrderItemRow> findItemRows(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("insert into p_archived_order (id, status, created, archived) " +
+            "select o.id, o.status, o.created, :archived from p_order o where o.id in :ids")
+    int archiveOrders(@Param("ids") Collection<Long> ids, @Param("archived") Date archived);
+
+    @Modifying
+    @Query("insert into p_archived_item (id, orderId, productId, quantity, unitPrice) " +
+            "select i.id, o.id, i.product.id, i.quantity, i.unitPrice from p_order o join o.items i where o.id in :ids")
+    int archiveItems(@Param("ids") Collection<Long> ids);
+
+}
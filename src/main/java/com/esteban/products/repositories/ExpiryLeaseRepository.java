@@ -0,0 +1,29 @@
+package com.esteban.products.repositories;
+
+import com.esteban.products.entities.ExpiryLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface ExpiryLeaseRepository extends JpaRepository<ExpiryLease, Integer> {
+
+    @Query("select l.shard from p_expiry_lease l")
+    List<Integer> findShards();
+
+    @Modifying
+    @Query("update p_expiry_lease l set l.owner = :owner, l.expires = :expires " +
+            "where l.shard = :shard and (l.owner = :owner or l.owner is null or l.expires < :now)")
+    int acquire(@Param("shard") Integer shard, @Param("owner") String owner, @Param("now") Date now, @Param("expires") Date expires);
+
+    @Modifying
+    @Query("update p_expiry_lease l set l.owner = null, l.expires = null where l.shard in :shards and l.owner = :owner")
+    int release(@Param("shards") Collection<Integer> shards, @Param("owner") String owner);
+
+}
@@ -0,0 +1,22 @@
+package com.esteban.products.repositories;
+
+import com.esteban.products.entities.ExpiryNode;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+
+@Repository
+public interface ExpiryNodeRepository extends CrudRepository<ExpiryNode, String> {
+
+    @Query("select count(n) from p_expiry_node n where n.expires >= :now")
+    long countAlive(@Param("now") Date now);
+
+    @Modifying
+    @Query("delete from p_expiry_node n where n.expires < :date")
+    int deleteExpiredBefore(@Param("date") Date date);
+
+}
@@ -0,0 +1,19 @@
+package com.esteban.products.repositories;
+
+import com.esteban.products.entities.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    @Modifying
+    @Query("delete from p_idempotency_key k where k.created < :date")
+    int deleteCreatedBefore(@Param("date") Date date);
+
+}
@@ -1,9 +1,19 @@
 package com.esteban.products.repositories;
 
 import com.esteban.products.entities.Item;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+
 @Repository
 public interface ItemRepository extends CrudRepository<Item, Long> {
+
+    @Modifying
+    @Query("delete from p_item i where i.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
 }
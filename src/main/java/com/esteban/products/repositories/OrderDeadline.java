@@ -0,0 +1,11 @@
+package com.esteban.products.repositories;
+
+import java.util.Date;
+
+public interface OrderDeadline {
+
+    Long getId();
+
+    Date getCreated();
+
+}
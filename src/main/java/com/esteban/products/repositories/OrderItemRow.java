@@ -0,0 +1,22 @@
+package com.esteban.products.repositories;
+
+import com.esteban.products.status.OrderStatus;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+public interface OrderItemRow {
+
+    Long getOrderId();
+
+    OrderStatus getStatus();
+
+    Date getCreated();
+
+    Long getProductId();
+
+    Integer getQuantity();
+
+    BigDecimal getUnitPrice();
+
+}
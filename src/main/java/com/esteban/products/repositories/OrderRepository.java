@@ -2,15 +2,80 @@ package com.esteban.products.repositories;
 
 import com.esteban.products.entities.Order;
 import com.esteban.products.status.OrderStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.QueryHint;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface OrderRepository extends CrudRepository<Order, Long> {
 
-    List<Order> findByStatusAndCreatedBefore(OrderStatus status, Date date);
+    String ITEM_ROWS = "select o.id as orderId, o.status as status, o.created as created, " +
+            "i.product.id as productId, i.quantity as quantity, i.unitPrice as unitPrice from p_order o left join o.items i ";
+
+    @Query("select o.id from p_order o where o.status = :status and o.created < :date order by o.id")
+    List<Long> findIdsByStatusAndCreatedBefore(@Param("status") OrderStatus status, @Param("date") Date date, Pageable pageable);
+
+    @Query("select o.id from p_order o where o.status = :status and o.created < :date and mod(o.id, :shards) in :owned order by o.id")
+    List<Long> findIdsByStatusAndCreatedBeforeInShards(@Param("status") OrderStatus status, @Param("date") Date date,
+                                                       @Param("shards") int shards, @Param("owned") Collection<Integer> owned,
+                                                       Pageable pageable);
+
+    long countByStatusAndCreatedBefore(OrderStatus status, Date date);
+
+    @Query("select o.id from p_order o where o.id in :ids and o.status = :status and o.created < :date")
+    List<Long> findIdsByIdInAndStatusAndCreatedBefore(@Param("ids") Collection<Long> ids, @Param("status") OrderStatus status,
+                                                       @Param("date") Date date);
+
+    @Query("select o.id from p_order o where o.status in :statuses and o.created < :date order by o.id")
+    List<Long> findIdsByStatusInAndCreatedBefore(@Param("statuses") Collection<OrderStatus> statuses, @Param("date") Date date,
+                                                 Pageable pageable);
+
+    @Query("select i.id from p_order o join o.items i where o.id in :ids")
+    List<Long> findItemIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select o.id as id, o.created as created from p_order o where o.status = :status and o.id > :afterId order by o.id")
+    List<OrderDeadline> findDeadlinesByStatus(@Param("status") OrderStatus status, @Param("afterId") Long afterId, Pageable pageable);
+
+    @EntityGraph(attributePaths = "items")
+    Optional<Order> findWithItemsById(Long id);
+
+    @Query("select o.id from p_order o where o.id > :afterId and o.status in :statuses " +
+            "and o.created >= :from and o.created < :to order by o.id")
+    List<Long> findIdsPage(@Param("afterId") Long afterId, @Param("statuses") Collection<OrderStatus> statuses,
+                           @Param("from") Date from, @Param("to") Date to, Pageable pageable);
+
+    @Query(ITEM_ROWS + "where o.id in :ids order by o.id, i.id")
+    List<OrderItemRow> findItemRows(@Param("ids") Collection<Long> ids);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(ITEM_ROWS + "where o.status in :statuses and o.created >= :from and o.created < :to order by o.id, i.id")
+    Stream<OrderItemRow> streamItemRows(@Param("statuses") Collection<OrderStatus> statuses, @Param("from") Date from,
+                                        @Param("to") Date to);
+
+    @Query("select i.product.id as productId, sum(i.quantity) as quantity from p_order o join o.items i " +
+            "where o.id in :ids group by i.product.id")
+    List<ProductQuantity> sumQuantitiesByProduct(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("update p_order o set o.status = :status, o.version = o.version + 1 where o.id in :ids and o.status = :current")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("current") OrderStatus current, @Param("status") OrderStatus status);
+
+    @Modifying
+    @Query("delete from p_order o where o.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 
 }
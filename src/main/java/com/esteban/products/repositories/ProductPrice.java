@@ -0,0 +1,11 @@
+package com.esteban.products.repositories;
+
+public interface ProductPrice {
+
+    Long getId();
+
+    double getPrice();
+
+    long getVersion();
+
+}
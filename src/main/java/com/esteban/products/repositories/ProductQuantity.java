@@ -0,0 +1,9 @@
+package com.esteban.products.repositories;
+
+public interface ProductQuantity {
+
+    Long getProductId();
+
+    Long getQuantity();
+
+}
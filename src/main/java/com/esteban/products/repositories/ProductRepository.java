@@ -1,9 +1,34 @@
 package com.esteban.products.repositories;
 
 import com.esteban.products.entities.Product;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
-public interface ProductRepository extends CrudRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductStockRepository {
+
+    @Query("select p.id from p_product p where p.id > :afterId order by p.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select p.id as id, p.stock as stock from p_product p where p.id in :ids")
+    List<ProductStock> findStocks(@Param("ids") Collection<Long> ids);
+
+    @Query("select p.id as id, p.price as price, p.version as version from p_product p where p.id in :ids")
+    List<ProductPrice> findPrices(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("update p_product p set p.stock = p.stock + :delta, p.version = p.version + 1 where p.id = :id")
+    int addStock(@Param("id") Long id, @Param("delta") Integer delta);
+
+    @Modifying
+    @Query("update p_product p set p.stock = :stock where p.id = :id")
+    int setStock(@Param("id") Long id, @Param("stock") Integer stock);
+
 }
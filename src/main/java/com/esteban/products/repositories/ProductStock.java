@@ -0,0 +1,9 @@
+package com.esteban.products.repositories;
+
+public interface ProductStock {
+
+    Long getId();
+
+    Integer getStock();
+
+}
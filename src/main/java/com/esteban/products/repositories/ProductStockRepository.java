@@ -0,0 +1,14 @@
+package com.esteban.products.repositories;
+
+import com.esteban.products.entities.Product;
+
+import java.util.List;
+import java.util.Map;
+
+public interface ProductStockRepository {
+
+    int[] decrementStocks(Map<Long, Integer> quantities);
+
+    int[] updateProducts(List<Product> products);
+
+}
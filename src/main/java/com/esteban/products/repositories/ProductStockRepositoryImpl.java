@@ -0,0 +1,38 @@
+package com.esteban.products.repositories;
+
+import com.esteban.products.entities.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class ProductStockRepositoryImpl implements ProductStockRepository {
+
+    private static final String DECREMENT_STOCK = "update p_product set stock = stock - ?, version = version + 1 where id = ? and stock >= ?";
+
+    private static final String UPDATE_PRODUCT = "update p_product set name = ?, price = ?, stock = ?, version = version + 1 where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public ProductStockRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int[] decrementStocks(Map<Long, Integer> quantities) {
+        List<Object[]> args = new ArrayList<>(quantities.size());
+        quantities.forEach((id, quantity) -> args.add(new Object[]{quantity, id, quantity}));
+        return jdbcTemplate.batchUpdate(DECREMENT_STOCK, args);
+    }
+
+    @Override
+    public int[] updateProducts(List<Product> products) {
+        List<Object[]> args = new ArrayList<>(products.size());
+        products.forEach(p -> args.add(new Object[]{p.getName(), p.getPrice(), p.getStock(), p.getId()}));
+        return jdbcTemplate.batchUpdate(UPDATE_PRODUCT, args);
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.esteban.products.repositories;
+
+import com.esteban.products.entities.StockMovement;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {
+
+    List<StockMovement> findByProductIdOrderById(Long productId);
+
+}
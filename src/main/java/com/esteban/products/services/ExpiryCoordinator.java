@@ -0,0 +1,164 @@
+package com.esteban.products.services;
+
+import com.esteban.products.entities.ExpiryLease;
+import com.esteban.products.entities.ExpiryNode;
+import com.esteban.products.repositories.ExpiryLeaseRepository;
+import com.esteban.products.repositories.ExpiryNodeRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Splits order expiry into {@code products.expiry.shards} shards by {@code id mod shards} and leases them to the
+ * running nodes through {@code p_expiry_lease}, so each shard is expired by a single node. Every renewal refreshes the
+ * node heartbeat in {@code p_expiry_node}, keeps the leases still held, gives back the ones above the fair share of the
+ * live nodes and takes free or lapsed ones up to it.
+ * Ownership is only trusted locally until the lease taken at the start of the last renewal runs out.
+ * When {@code products.expiry.cluster.enabled} is off this node owns every order. Running several nodes needs the
+ * stock to be reserved in the database, so the cluster mode refuses to start with the in-memory stock ledger.
+ */
+@Component
+public class ExpiryCoordinator {
+
+    private final ExpiryLeaseRepository expiryLeaseRepository;
+
+    private final ExpiryNodeRepository expiryNodeRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final int shards;
+
+    private final long leaseTtl;
+
+    private final String nodeId;
+
+    private volatile Set<Integer> owned = Collections.emptySet();
+
+    private volatile long validUntil;
+
+    @Autowired
+    public ExpiryCoordinator(ExpiryLeaseRepository expiryLeaseRepository, ExpiryNodeRepository expiryNodeRepository,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${products.expiry.cluster.enabled:false}") boolean enabled,
+                             @Value("${products.expiry.shards:16}") int shards,
+                             @Value("${products.expiry.lease-ttl:30000}") long leaseTtl,
+                             @Value("${products.node-id:#{null}}") String nodeId,
+                             @Value("${products.stock.ledger.enabled:true}") boolean ledgerEnabled) {
+        if(enabled && ledgerEnabled) {
+            throw new IllegalStateException("products.expiry.cluster.enabled requires products.stock.ledger.enabled=false, "
+                    + "the in-memory stock ledger cannot be shared between nodes");
+        }
+        this.expiryLeaseRepository = expiryLeaseRepository;
+        this.expiryNodeRepository = expiryNodeRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.shards = shards;
+        this.leaseTtl = leaseTtl;
+        this.nodeId = nodeId == null || nodeId.isEmpty() ? UUID.randomUUID().toString() : nodeId;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getShardCount() {
+        return shards;
+    }
+
+    public Set<Integer> getOwnedShards() {
+        return System.currentTimeMillis() < validUntil ? owned : Collections.emptySet();
+    }
+
+    public boolean owns(Long orderId) {
+        return !enabled || getOwnedShards().contains((int) (orderId % shards));
+    }
+
+    @Scheduled(fixedDelayString = "${products.expiry.lease-renew:10000}")
+    public synchronized void renew() {
+        if(!enabled) {
+            return;
+        }
+        createShards();
+        long now = System.currentTimeMillis();
+        Set<Integer> renewed = transactionTemplate.execute(status -> renew(new Date(now), new Date(now + leaseTtl)));
+        owned = Collections.unmodifiableSet(renewed);
+        validUntil = now + leaseTtl;
+    }
+
+    @PreDestroy
+    public synchronized void release() {
+        if(!enabled) {
+            return;
+        }
+        Set<Integer> released = owned;
+        owned = Collections.emptySet();
+        transactionTemplate.executeWithoutResult(status -> {
+            if(!released.isEmpty()) {
+                expiryLeaseRepository.release(released, nodeId);
+            }
+            expiryNodeRepository.deleteById(nodeId);
+        });
+    }
+
+    private Set<Integer> renew(Date now, Date expires) {
+        expiryNodeRepository.deleteExpiredBefore(now);
+        expiryNodeRepository.save(ExpiryNode.builder().id(nodeId).expires(expires).build());
+        long nodes = expiryNodeRepository.countAlive(now);
+        int fairShare = (int) ((shards + nodes - 1) / nodes);
+        Set<Integer> held = new TreeSet<>();
+        for(Integer shard : owned) {
+            if(expiryLeaseRepository.acquire(shard, nodeId, now, expires) == 1) {
+                held.add(shard);
+            }
+        }
+        List<Integer> surplus = new ArrayList<>();
+        for(Integer shard : held) {
+            if(held.size() - surplus.size() > fairShare) {
+                surplus.add(shard);
+            }
+        }
+        if(!surplus.isEmpty()) {
+            expiryLeaseRepository.release(surplus, nodeId);
+            surplus.forEach(held::remove);
+        }
+        for(int shard = 0; shard < shards && held.size() < fairShare; shard++) {
+            if(!held.contains(shard) && expiryLeaseRepository.acquire(shard, nodeId, now, expires) == 1) {
+                held.add(shard);
+            }
+        }
+        return held;
+    }
+
+    private void createShards() {
+        Set<Integer> existing = new TreeSet<>(expiryLeaseRepository.findShards());
+        List<ExpiryLease> missing = new ArrayList<>();
+        for(int shard = 0; shard < shards; shard++) {
+            if(!existing.contains(shard)) {
+                missing.add(ExpiryLease.builder().shard(shard).build());
+            }
+        }
+        if(missing.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> expiryLeaseRepository.saveAll(missing));
+        } catch(DataIntegrityViolationException ex) {
+            // Another node created them first
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.esteban.products.services;
+
+import com.esteban.products.repositories.ProductRepository;
+import com.esteban.products.repositories.ProductStock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+/**
+ * Flat combining of the reservations of hot products when the stock is kept in the database.
+ * Concurrent requests for one product are queued, and whichever thread holds the product's lock admits
+ * all of them against an in-memory count and writes a single conditional decrement in its own transaction.
+ * The count is only an admission estimate: it is reloaded whenever the decrement does not apply.
+ */
+@Component
+public class HotStockCoalescer {
+
+    private static final int UNKNOWN = -1;
+
+    private final ProductRepository productRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ConcurrentMap<Long, HotProduct> hotProducts = new ConcurrentHashMap<>();
+
+    @Autowired
+    public HotStockCoalescer(ProductRepository productRepository, PlatformTransactionManager transactionManager,
+                             @Value("${products.stock.hot.ids:}") Set<Long> hotProductIds) {
+        this.productRepository = productRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        hotProductIds.forEach(this::flag);
+    }
+
+    public void flag(Long productId) {
+        hotProducts.computeIfAbsent(productId, HotProduct::new);
+    }
+
+    public void unflag(Long productId) {
+        hotProducts.remove(productId);
+    }
+
+    public boolean isHot(Long productId) {
+        return hotProducts.containsKey(productId);
+    }
+
+    /**
+     * Returns the missing quantity, zero when the reservation has been committed.
+     */
+    public int reserve(Long productId, int quantity) {
+        HotProduct hotProduct = hotProducts.get(productId);
+        if(hotProduct == null) {
+            hotProduct = new HotProduct(productId);
+        }
+        Request request = new Request(quantity);
+        hotProduct.pending.add(request);
+        hotProduct.lock.lock();
+        try {
+            if(!request.done) {
+                combine(hotProduct);
+            }
+        } finally {
+            hotProduct.lock.unlock();
+        }
+        if(request.error != null) {
+            throw request.error;
+        }
+        return request.missing;
+    }
+
+    public void refund(Long productId, int quantity) {
+        transactionTemplate.executeWithoutResult(status -> productRepository.addStock(productId, quantity));
+        invalidate(productId);
+    }
+
+    public void invalidate(Long productId) {
+        HotProduct hotProduct = hotProducts.get(productId);
+        if(hotProduct != null) {
+            hotProduct.stale = true;
+        }
+    }
+
+    private void combine(HotProduct hotProduct) {
+        List<Request> batch = new ArrayList<>();
+        for(Request request = hotProduct.pending.poll(); request != null; request = hotProduct.pending.poll()) {
+            batch.add(request);
+        }
+        try {
+            while(!tryCombine(hotProduct, batch)) {
+                hotProduct.stale = true;
+            }
+        } catch(RuntimeException e) {
+            hotProduct.stale = true;
+            batch.forEach(r -> r.error = e);
+        }
+        batch.forEach(r -> r.done = true);
+    }
+
+    private boolean tryCombine(HotProduct hotProduct, List<Request> batch) {
+        if(hotProduct.stale) {
+            hotProduct.available = loadStock(hotProduct.id);
+            hotProduct.stale = false;
+        }
+        int available = hotProduct.available;
+        int total = 0;
+        for(Request request : batch) {
+            if(request.quantity <= available) {
+                available -= request.quantity;
+                total += request.quantity;
+                request.missing = 0;
+            } else {
+                request.missing = request.quantity - available;
+            }
+        }
+        if(total > 0) {
+            int granted = total;
+            int[] updated = transactionTemplate.execute(status ->
+                    productRepository.decrementStocks(Collections.singletonMap(hotProduct.id, granted)));
+            if(updated[0] == 0) {
+                return false;
+            }
+        }
+        hotProduct.available = available;
+        return true;
+    }
+
+    private int loadStock(Long productId) {
+        List<ProductStock> stocks = productRepository.findStocks(Collections.singleton(productId));
+        if(stocks.isEmpty()) {
+            throw new ResponseStatusException(NOT_FOUND, "Product not found with id " + productId);
+        }
+        return stocks.get(0).getStock();
+    }
+
+    private static class HotProduct {
+
+        private final Long id;
+
+        private final Queue<Request> pending = new ConcurrentLinkedQueue<>();
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private int available = UNKNOWN;
+
+        private volatile boolean stale = true;
+
+        private HotProduct(Long id) {
+            this.id = id;
+        }
+
+    }
+
+    private static class Request {
+
+        private final int quantity;
+
+        private int missing;
+
+        private RuntimeException error;
+
+        private volatile boolean done;
+
+        private Request(int quantity) {
+            this.quantity = quantity;
+        }
+
+    }
+
+}
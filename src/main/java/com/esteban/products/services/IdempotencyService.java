@@ -0,0 +1,132 @@
+package com.esteban.products.services;
+
+import com.esteban.products.model.OrderDto;
+import com.esteban.products.repositories.IdempotencyKeyRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+
+@Service
+public class IdempotencyService {
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private final OrderService orderService;
+
+    private final Cache<String, Remembered> orders;
+
+    private final long retention;
+
+    @Autowired
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository, OrderService orderService,
+                              @Value("${products.idempotency.cache.maximum-size:100000}") long maximumSize,
+                              @Value("${products.idempotency.cache.ttl:600000}") long ttl,
+                              @Value("${products.idempotency.retention:86400000}") long retention) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.orderService = orderService;
+        this.orders = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(ttl))
+                .build();
+        this.retention = retention;
+    }
+
+    /**
+     * Creates the order once per key. A retry with the same items gets the stored order back, while a key reused
+     * for different items is rejected with 422.
+     */
+    public OrderDto create(String key, OrderDto orderDto) {
+        String fingerprint = fingerprint(OrderLines.of(orderDto.getItems()));
+        Remembered existing = find(key);
+        if(existing != null) {
+            return existing.get(key, fingerprint);
+        }
+        try {
+            return remember(key, fingerprint, orderService.create(orderDto, key, fingerprint)).order;
+        } catch(DataIntegrityViolationException ex) {
+            existing = find(key);
+            if(existing == null) {
+                throw ex;
+            }
+            return existing.get(key, fingerprint);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${products.idempotency.purge-delay:3600000}")
+    @Transactional
+    public void purge() {
+        idempotencyKeyRepository.deleteCreatedBefore(new Date(System.currentTimeMillis() - retention));
+    }
+
+    private Remembered find(String key) {
+        Remembered cached = orders.getIfPresent(key);
+        if(cached != null) {
+            return cached;
+        }
+        return idempotencyKeyRepository.findById(key)
+                .map(k -> remember(key, k.getFingerprint(), orderService.get(k.getOrderId())))
+                .orElse(null);
+    }
+
+    private Remembered remember(String key, String fingerprint, OrderDto orderDto) {
+        Remembered remembered = new Remembered(fingerprint, orderDto);
+        orders.put(key, remembered);
+        return remembered;
+    }
+
+    /**
+     * SHA-256 of the merged lines, so the same items in any order or split over several lines match.
+     */
+    static String fingerprint(OrderLines lines) {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < lines.size(); i++) {
+            text.append(lines.productId(i)).append(':').append(lines.quantity(i)).append(';');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch(NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static final class Remembered {
+
+        private final String fingerprint;
+
+        private final OrderDto order;
+
+        private Remembered(String fingerprint, OrderDto order) {
+            this.fingerprint = fingerprint;
+            this.order = order;
+        }
+
+        /**
+         * Keys stored before fingerprints were recorded have none and are trusted.
+         */
+        private OrderDto get(String key, String requested) {
+            if(fingerprint != null && !fingerprint.equals(requested)) {
+                throw new ResponseStatusException(UNPROCESSABLE_ENTITY,
+                        "Idempotency-Key " + key + " was already used for a different order");
+            }
+            return order;
+        }
+
+    }
+
+}
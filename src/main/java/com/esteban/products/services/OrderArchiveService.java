@@ -0,0 +1,103 @@
+package com.esteban.products.services;
+
+import com.esteban.products.repositories.ArchivedOrderRepository;
+import com.esteban.products.repositories.ItemRepository;
+import com.esteban.products.repositories.OrderRepository;
+import com.esteban.products.status.OrderStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves {@code PAID} and {@code CANCELLED} orders older than {@code products.archive.age} from {@code p_order} and
+ * {@code p_item} to {@code p_archived_order} and {@code p_archived_item}, one page per transaction, so the tables
+ * scanned by the expiry and status change paths only hold live orders.
+ */
+@Service
+public class OrderArchiveService {
+
+    private static final Collection<OrderStatus> TERMINAL = EnumSet.of(OrderStatus.PAID, OrderStatus.CANCELLED);
+
+    private final OrderRepository orderRepository;
+
+    private final ItemRepository itemRepository;
+
+    private final ArchivedOrderRepository archivedOrderRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Timer archiveRun;
+
+    private final Counter archived;
+
+    private final long age;
+
+    private final int pageSize;
+
+    private final long timeBudget;
+
+    @Autowired
+    public OrderArchiveService(OrderRepository orderRepository, ItemRepository itemRepository,
+                               ArchivedOrderRepository archivedOrderRepository, TransactionTemplate transactionTemplate,
+                               MeterRegistry registry,
+                               @Value("${products.archive.age:604800000}") long age,
+                               @Value("${products.archive.page-size:500}") int pageSize,
+                               @Value("${products.archive.time-budget:20000}") long timeBudget) {
+        this.orderRepository = orderRepository;
+        this.itemRepository = itemRepository;
+        this.archivedOrderRepository = archivedOrderRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.archiveRun = registry.timer("orders.archive.run");
+        this.archived = registry.counter("orders.archived");
+        this.age = age;
+        this.pageSize = pageSize;
+        this.timeBudget = timeBudget;
+    }
+
+    @Scheduled(fixedDelayString = "${products.archive.delay:3600000}", initialDelayString = "${products.archive.delay:3600000}")
+    public void archiveOrders() {
+        archive(new Date(System.currentTimeMillis() - age));
+    }
+
+    public int archive(Date before) {
+        long start = System.nanoTime();
+        long deadline = System.currentTimeMillis() + timeBudget;
+        int total = 0;
+        int page;
+        do {
+            page = transactionTemplate.execute(status -> move(
+                    orderRepository.findIdsByStatusInAndCreatedBefore(TERMINAL, before, PageRequest.of(0, pageSize))));
+            total += page;
+        } while(page == pageSize && System.currentTimeMillis() < deadline);
+        archiveRun.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        archived.increment(total);
+        return total;
+    }
+
+    private int move(List<Long> ids) {
+        if(ids.isEmpty()) {
+            return 0;
+        }
+        List<Long> itemIds = orderRepository.findItemIds(ids);
+        archivedOrderRepository.archiveOrders(ids, new Date());
+        archivedOrderRepository.archiveItems(ids);
+        orderRepository.deleteByIds(ids);
+        if(!itemIds.isEmpty()) {
+            itemRepository.deleteByIds(itemIds);
+        }
+        return ids.size();
+    }
+
+}
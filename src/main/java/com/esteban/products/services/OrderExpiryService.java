@@ -0,0 +1,169 @@
+package com.esteban.products.services;
+
+import com.esteban.products.repositories.OrderDeadline;
+import com.esteban.products.repositories.OrderRepository;
+import com.esteban.products.repositories.ProductQuantity;
+import com.esteban.products.status.OrderStatus;
+import com.esteban.products.status.StockMovementReason;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+public class OrderExpiryService {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final OrderRepository orderRepository;
+
+    private final StockService stockService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int pageSize;
+
+    private final long timeBudget;
+
+    private final long ttl;
+
+    private final OrderMetrics orderMetrics;
+
+    private final TimingWheel wheel;
+
+    private final ExpiryCoordinator expiryCoordinator;
+
+    @Autowired
+    public OrderExpiryService(OrderRepository orderRepository, StockService stockService, TransactionTemplate transactionTemplate,
+                              OrderMetrics orderMetrics, ExpiryCoordinator expiryCoordinator, MeterRegistry registry,
+                              @Value("${products.expiry.page-size:500}") int pageSize,
+                              @Value("${products.expiry.time-budget:20000}") long timeBudget,
+                              @Value("${products.expiry.ttl:1800000}") long ttl,
+                              @Value("${products.expiry.tick:1000}") long tick) {
+        this.orderRepository = orderRepository;
+        this.stockService = stockService;
+        this.transactionTemplate = transactionTemplate;
+        this.pageSize = pageSize;
+        this.timeBudget = timeBudget;
+        this.ttl = ttl;
+        this.orderMetrics = orderMetrics;
+        this.expiryCoordinator = expiryCoordinator;
+        this.wheel = new TimingWheel(tick, 4, System.currentTimeMillis());
+        registry.gauge("orders.expiry.scheduled", wheel, TimingWheel::size);
+    }
+
+    public Date getExpiration() {
+        return new Date(System.currentTimeMillis() - ttl);
+    }
+
+    public void schedule(Long orderId, Date created) {
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            wheel.schedule(orderId, created.getTime() + ttl);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                wheel.schedule(orderId, created.getTime() + ttl);
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Long afterId = 0L;
+        List<OrderDeadline> deadlines;
+        do {
+            deadlines = orderRepository.findDeadlinesByStatus(OrderStatus.CREATED, afterId, PageRequest.of(0, pageSize));
+            for(OrderDeadline deadline : deadlines) {
+                wheel.schedule(deadline.getId(), deadline.getCreated().getTime() + ttl);
+                afterId = deadline.getId();
+            }
+        } while(deadlines.size() == pageSize);
+    }
+
+    @Scheduled(fixedRateString = "${products.expiry.tick:1000}")
+    public void tick() {
+        List<Long> due = wheel.advance(System.currentTimeMillis());
+        if(expiryCoordinator.isEnabled()) {
+            due = due.stream().filter(expiryCoordinator::owns).collect(Collectors.toList());
+        }
+        for(int from = 0; from < due.size(); from += pageSize) {
+            List<Long> page = due.subList(from, Math.min(from + pageSize, due.size()));
+            Date expiration = getExpiration();
+            orderMetrics.expiredByWheel(cancelPage(
+                    orderRepository.findIdsByIdInAndStatusAndCreatedBefore(page, OrderStatus.CREATED, expiration), expiration));
+        }
+    }
+
+    public int expire(Date expiration) {
+        long start = System.nanoTime();
+        long backlog = orderRepository.countByStatusAndCreatedBefore(OrderStatus.CREATED, expiration);
+        long deadline = System.currentTimeMillis() + timeBudget;
+        int expired = 0;
+        List<Long> page;
+        do {
+            page = findExpiredIds(expiration);
+            expired += cancelPage(page, expiration);
+        } while(page.size() == pageSize && System.currentTimeMillis() < deadline);
+        orderMetrics.expiryRun(backlog, System.nanoTime() - start, expired);
+        return expired;
+    }
+
+    private List<Long> findExpiredIds(Date expiration) {
+        if(!expiryCoordinator.isEnabled()) {
+            return orderRepository.findIdsByStatusAndCreatedBefore(OrderStatus.CREATED, expiration, PageRequest.of(0, pageSize));
+        }
+        Set<Integer> owned = expiryCoordinator.getOwnedShards();
+        if(owned.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return orderRepository.findIdsByStatusAndCreatedBeforeInShards(OrderStatus.CREATED, expiration,
+                expiryCoordinator.getShardCount(), owned, PageRequest.of(0, pageSize));
+    }
+
+    /**
+     * Cancels the page in one transaction. When some of its orders were paid or cancelled meanwhile the page is
+     * rolled back and cancelled again without them, so one conflicting order does not hold back the others.
+     */
+    private int cancelPage(List<Long> ids, Date expiration) {
+        for(int attempt = 1; ; attempt++) {
+            List<Long> page = ids;
+            try {
+                return transactionTemplate.execute(status -> cancel(page));
+            } catch(ConcurrencyFailureException ex) {
+                if(attempt >= MAX_ATTEMPTS) {
+                    return 0;
+                }
+                ids = orderRepository.findIdsByIdInAndStatusAndCreatedBefore(ids, OrderStatus.CREATED, expiration);
+            }
+        }
+    }
+
+    private int cancel(List<Long> ids) {
+        if(ids.isEmpty()) {
+            return 0;
+        }
+        List<ProductQuantity> quantities = orderRepository.sumQuantitiesByProduct(ids);
+        if(orderRepository.updateStatus(ids, OrderStatus.CREATED, OrderStatus.CANCELLED) != ids.size()) {
+            throw new ConcurrencyFailureException("Orders " + ids + " were changed while being expired");
+        }
+        quantities.forEach(q -> stockService.release(q.getProductId(), q.getQuantity().intValue(), StockMovementReason.EXPIRY));
+        return ids.size();
+    }
+
+}
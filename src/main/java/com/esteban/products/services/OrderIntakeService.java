@@ -0,0 +1,218 @@
+package com.esteban.products.services;
+
+import com.esteban.products.error.MissingMessage;
+import com.esteban.products.model.BatchOrderResult;
+import com.esteban.products.model.OrderDto;
+import com.esteban.products.model.OrderTicket;
+import com.esteban.products.status.TicketStatus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+
+@Service
+public class OrderIntakeService {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderIntakeService.class);
+
+    private static final long POLL_TIMEOUT = 100;
+
+    private final OrderService orderService;
+
+    private final BlockingQueue<Submission> queue;
+
+    private final Cache<String, OrderTicket> tickets;
+
+    @Getter
+    private final boolean enabled;
+
+    private final int workers;
+
+    private final int batchSize;
+
+    private final long offerTimeout;
+
+    private final long shutdownTimeout;
+
+    private volatile boolean running;
+
+    private ExecutorService executor;
+
+    @Autowired
+    public OrderIntakeService(OrderService orderService,
+                              @Value("${products.orders.intake.async:false}") boolean enabled,
+                              @Value("${products.orders.intake.capacity:10000}") int capacity,
+                              @Value("${products.orders.intake.workers:4}") int workers,
+                              @Value("${products.orders.intake.batch-size:100}") int batchSize,
+                              @Value("${products.orders.intake.offer-timeout:100}") long offerTimeout,
+                              @Value("${products.orders.intake.ticket-ttl:3600000}") long ticketTtl,
+                              @Value("${products.orders.intake.ticket-maximum-size:100000}") long ticketMaximumSize,
+                              @Value("${products.orders.intake.shutdown-timeout:30000}") long shutdownTimeout) {
+        this.orderService = orderService;
+        this.enabled = enabled;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.tickets = Caffeine.newBuilder()
+                .maximumSize(ticketMaximumSize)
+                .expireAfterWrite(Duration.ofMillis(ticketTtl))
+                .build();
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.offerTimeout = offerTimeout;
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    @PostConstruct
+    public void start() {
+        if(!enabled) {
+            return;
+        }
+        running = true;
+        executor = newWorkerExecutor();
+        for(int i = 0; i < workers; i++) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Stops taking submissions and lets the workers drain the queue for up to {@code products.orders.intake.shutdown-timeout}.
+     * Submissions still queued after that are marked as failed, so no accepted ticket is left queued.
+     */
+    @PreDestroy
+    public void stop() {
+        if(executor == null) {
+            return;
+        }
+        running = false;
+        executor.shutdown();
+        try {
+            if(!executor.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch(InterruptedException ex) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        List<Submission> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if(!remaining.isEmpty()) {
+            log.warn("Order intake stopped with {} orders still queued", remaining.size());
+            MissingMessage error = MissingMessage.builder().error("Order intake stopped before processing the order").build();
+            remaining.forEach(s -> complete(s, TicketStatus.FAILED, null, error));
+        }
+    }
+
+    public OrderTicket submit(OrderDto orderDto) {
+        if(!running) {
+            throw new ResponseStatusException(SERVICE_UNAVAILABLE, "Order intake is not running");
+        }
+        OrderTicket ticket = OrderTicket.builder()
+                .id(UUID.randomUUID().toString())
+                .status(TicketStatus.QUEUED)
+                .build();
+        tickets.put(ticket.getId(), ticket);
+        boolean queued;
+        try {
+            queued = queue.offer(new Submission(ticket.getId(), orderDto), offerTimeout, TimeUnit.MILLISECONDS);
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if(!queued) {
+            tickets.invalidate(ticket.getId());
+            throw new ResponseStatusException(TOO_MANY_REQUESTS, "Order intake queue is full");
+        }
+        return ticket;
+    }
+
+    public OrderTicket getTicket(String id) {
+        OrderTicket ticket = tickets.getIfPresent(id);
+        if(ticket == null) {
+            throw new ResponseStatusException(NOT_FOUND, "Unable to find ticket with id " + id);
+        }
+        return ticket;
+    }
+
+    private void drain() {
+        List<Submission> batch = new ArrayList<>(batchSize);
+        while(running || !queue.isEmpty()) {
+            Submission submission;
+            try {
+                submission = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch(InterruptedException ex) {
+                return;
+            }
+            if(submission == null) {
+                continue;
+            }
+            batch.add(submission);
+            queue.drainTo(batch, batchSize - 1);
+            process(batch);
+            batch.clear();
+        }
+    }
+
+    private void process(List<Submission> batch) {
+        List<OrderDto> orders = new ArrayList<>(batch.size());
+        batch.forEach(s -> orders.add(s.orderDto));
+        try {
+            List<BatchOrderResult> results = orderService.createAll(orders);
+            for(int i = 0; i < batch.size(); i++) {
+                BatchOrderResult result = results.get(i);
+                complete(batch.get(i), result.getOrder() != null ? TicketStatus.CREATED : TicketStatus.REJECTED,
+                        result.getOrder(), result.getError());
+            }
+        } catch(RuntimeException ex) {
+            log.error("Unable to process a batch of {} orders", batch.size(), ex);
+            MissingMessage error = MissingMessage.builder().error("Unable to process order").build();
+            batch.forEach(s -> complete(s, TicketStatus.FAILED, null, error));
+        }
+    }
+
+    private void complete(Submission submission, TicketStatus status, OrderDto order, MissingMessage error) {
+        tickets.put(submission.ticketId, OrderTicket.builder()
+                .id(submission.ticketId)
+                .status(status)
+                .order(order)
+                .error(error)
+                .build());
+    }
+
+    private ExecutorService newWorkerExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException ex) {
+            return Executors.newFixedThreadPool(workers);
+        }
+    }
+
+    private static class Submission {
+
+        private final String ticketId;
+
+        private final OrderDto orderDto;
+
+        private Submission(String ticketId, OrderDto orderDto) {
+            this.ticketId = ticketId;
+            this.orderDto = orderDto;
+        }
+
+    }
+
+}
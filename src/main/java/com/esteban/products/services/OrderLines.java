@@ -0,0 +1,121 @@
+package com.esteban.products.services;
+
+import com.esteban.products.model.ItemDto;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+/**
+ * Lines of an order merged by product: product ids sorted ascending in a {@code long[]} and their summed quantities
+ * in a parallel {@code int[]}. Lines are validated and merged by binary search insertion in one pass over the items,
+ * so an order costs two arrays instead of boxed maps and sets, and products are always visited in id order.
+ */
+public final class OrderLines {
+
+    private final long[] productIds;
+
+    private final int[] quantities;
+
+    private final int size;
+
+    private OrderLines(long[] productIds, int[] quantities, int size) {
+        this.productIds = productIds;
+        this.quantities = quantities;
+        this.size = size;
+    }
+
+    public static OrderLines of(List<ItemDto> items) {
+        int capacity = items == null ? 0 : items.size();
+        long[] productIds = new long[capacity];
+        int[] quantities = new int[capacity];
+        int size = 0;
+        for(int i = 0; i < capacity; i++) {
+            ItemDto item = items.get(i);
+            if(item.getProductId() == null) {
+                throw new ResponseStatusException(BAD_REQUEST, "Product id is required on every order line");
+            }
+            long productId = item.getProductId();
+            int quantity = item.getQuantity();
+            if(quantity < 0) {
+                throw new ResponseStatusException(BAD_REQUEST, "Quantity of product " + productId + " must not be negative");
+            }
+            int index = Arrays.binarySearch(productIds, 0, size, productId);
+            if(index >= 0) {
+                long merged = (long) quantities[index] + quantity;
+                if(merged > Integer.MAX_VALUE) {
+                    throw new ResponseStatusException(BAD_REQUEST, "Quantity of product " + productId + " is too large");
+                }
+                quantities[index] = (int) merged;
+                continue;
+            }
+            int insertion = -index - 1;
+            System.arraycopy(productIds, insertion, productIds, insertion + 1, size - insertion);
+            System.arraycopy(quantities, insertion, quantities, insertion + 1, size - insertion);
+            productIds[insertion] = productId;
+            quantities[insertion] = quantity;
+            size++;
+        }
+        return new OrderLines(productIds, quantities, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long productId(int line) {
+        return productIds[line];
+    }
+
+    public int quantity(int line) {
+        return quantities[line];
+    }
+
+    /**
+     * Boxed view of the product ids, for the repository calls.
+     */
+    public List<Long> productIds() {
+        return new AbstractList<Long>() {
+            @Override
+            public Long get(int index) {
+                return productIds[index];
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public Map<Long, Integer> toMap() {
+        Map<Long, Integer> map = new TreeMap<>();
+        for(int i = 0; i < size; i++) {
+            map.put(productIds[i], quantities[i]);
+        }
+        return map;
+    }
+
+    /**
+     * Items for the lines with a positive shortfall, {@code shortfalls} being indexed like the lines.
+     */
+    public List<ItemDto> toMissingItems(int[] shortfalls) {
+        List<ItemDto> items = new ArrayList<>();
+        for(int i = 0; i < size; i++) {
+            if(shortfalls[i] > 0) {
+                items.add(ItemDto.builder()
+                        .productId(productIds[i])
+                        .quantity(shortfalls[i])
+                        .build());
+            }
+        }
+        return items;
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.esteban.products.services;
+
+import com.esteban.products.model.ItemDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Order metrics. Per-product meters are tagged with the ids listed in {@code products.metrics.product-ids} and with
+ * the first {@code products.metrics.product-tag-limit} other products they see, every later product is counted under
+ * {@code product=other} so the number of series stays bounded.
+ */
+@Component
+public class OrderMetrics {
+
+    private static final String OTHER_PRODUCTS = "other";
+
+    public enum Stage {
+        PRICE, RESERVE, STORE_ITEMS, CREATE_ORDER, TO_DTO
+    }
+
+    private final MeterRegistry registry;
+
+    private final Set<Long> productIds;
+
+    private final Set<Long> taggedProductIds = ConcurrentHashMap.newKeySet();
+
+    private final int productTagLimit;
+
+    private final Map<Stage, Timer> stages = new EnumMap<>(Stage.class);
+
+    private final Timer expiryRun;
+
+    private final Counter expiredByWheel;
+
+    private final Counter expiredByPolling;
+
+    private final AtomicLong expiryBacklog = new AtomicLong();
+
+    @Autowired
+    public OrderMetrics(MeterRegistry registry, @Value("${products.metrics.product-ids:}") Set<Long> productIds,
+                        @Value("${products.metrics.product-tag-limit:100}") int productTagLimit) {
+        this.registry = registry;
+        this.productIds = productIds;
+        this.productTagLimit = productTagLimit;
+        for(Stage stage : Stage.values()) {
+            stages.put(stage, Timer.builder("orders.create.stage")
+                    .tag("stage", stage.name().toLowerCase())
+                    .register(registry));
+        }
+        this.expiryRun = registry.timer("orders.expiry.run");
+        this.expiredByWheel = registry.counter("orders.expired", "trigger", "wheel");
+        this.expiredByPolling = registry.counter("orders.expired", "trigger", "polling");
+        registry.gauge("orders.expiry.backlog", expiryBacklog);
+    }
+
+    public <T> T time(Stage stage, Supplier<T> supplier) {
+        return stages.get(stage).record(supplier);
+    }
+
+    public void time(Stage stage, Runnable runnable) {
+        stages.get(stage).record(runnable);
+    }
+
+    public void rejected(List<ItemDto> missingItems) {
+        missingItems.forEach(i -> registry.counter("orders.stock.rejections", "product", productTag(i.getProductId())).increment());
+    }
+
+    public void expiryRun(long backlog, long nanos, int expired) {
+        expiryBacklog.set(backlog);
+        expiryRun.record(nanos, TimeUnit.NANOSECONDS);
+        expiredByPolling.increment(expired);
+    }
+
+    public void expiredByWheel(int expired) {
+        expiredByWheel.increment(expired);
+    }
+
+    public void stockConflict(Object productId) {
+        registry.counter("products.stock.conflicts", "product", productTag(productId)).increment();
+    }
+
+    private String productTag(Object productId) {
+        if(!(productId instanceof Long)) {
+            return OTHER_PRODUCTS;
+        }
+        Long id = (Long) productId;
+        return productIds.contains(id) || taggedProductIds.contains(id) || tag(id) ? id.toString() : OTHER_PRODUCTS;
+    }
+
+    private synchronized boolean tag(Long productId) {
+        return taggedProductIds.size() < productTagLimit && taggedProductIds.add(productId);
+    }
+
+}
@@ -1,28 +1,35 @@
 package com.esteban.products.services;
 
+import com.esteban.products.entities.IdempotencyKey;
 import com.esteban.products.entities.Item;
 import com.esteban.products.entities.Order;
-import com.esteban.products.entities.Product;
+import com.esteban.products.error.MissingMessage;
 import com.esteban.products.error.MissingStockException;
+import com.esteban.products.model.BatchOrderResult;
 import com.esteban.products.model.ItemDto;
+import com.esteban.products.model.KeysetPage;
 import com.esteban.products.model.OrderDto;
+import com.esteban.products.repositories.ArchivedOrderRepository;
+import com.esteban.products.repositories.IdempotencyKeyRepository;
 import com.esteban.products.repositories.ItemRepository;
+import com.esteban.products.repositories.OrderItemRow;
 import com.esteban.products.repositories.OrderRepository;
 import com.esteban.products.repositories.ProductRepository;
+import com.esteban.products.services.OrderMetrics.Stage;
 import com.esteban.products.status.OrderStatus;
+import com.esteban.products.status.StockMovementReason;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.util.Date;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
@@ -30,146 +37,323 @@ import static org.springframework.http.HttpStatus.NOT_FOUND;
 @Service
 public class OrderService {
 
+    private static final int MAX_LIMIT = 1000;
+
+    private static final long MAX_DATE = 253402300799999L;
+
     private final OrderRepository orderRepository;
 
     private final ProductRepository productRepository;
 
     private final ItemRepository itemRepository;
 
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private final ArchivedOrderRepository archivedOrderRepository;
+
+    private final StockService stockService;
+
+    private final PriceCatalog priceCatalog;
+
+    private final OrderExpiryService orderExpiryService;
+
+    private final OrderMetrics orderMetrics;
+
+    private final RetryExecutor retryExecutor;
+
+    private final TransactionTemplate transactionTemplate;
+
     @Autowired
-    public OrderService(OrderRepository orderRepository, ProductRepository productRepository, ItemRepository itemRepository) {
+    public OrderService(OrderRepository orderRepository, ProductRepository productRepository, ItemRepository itemRepository,
+                        IdempotencyKeyRepository idempotencyKeyRepository, ArchivedOrderRepository archivedOrderRepository,
+                        StockService stockService, PriceCatalog priceCatalog, OrderExpiryService orderExpiryService, OrderMetrics orderMetrics,
+                        RetryExecutor retryExecutor, TransactionTemplate transactionTemplate) {
         this.orderRepository = orderRepository;
         this.productRepository = productRepository;
         this.itemRepository = itemRepository;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.archivedOrderRepository = archivedOrderRepository;
+        this.stockService = stockService;
+        this.priceCatalog = priceCatalog;
+        this.orderExpiryService = orderExpiryService;
+        this.orderMetrics = orderMetrics;
+        this.retryExecutor = retryExecutor;
+        this.transactionTemplate = transactionTemplate;
     }
 
-    @Transactional
     public OrderDto create(OrderDto orderDto) {
-        Map<Long, Product> products = updateProducts(orderDto);
-        Iterable<Item> items = storeItems(orderDto, products);
-        Order order = createOrder(items);
-        return toDto(order);
+        return retryExecutor.execute("order.create", () -> transactionTemplate.execute(status -> doCreate(orderDto)));
     }
 
-    @Transactional
-    public OrderDto updateStatus(Long id, OrderStatus status) {
-        Order order = storeStatus(id, status);
-        if(status == OrderStatus.CANCELLED) {
-            updateCancelledProducts(order);
-        }
-        return toDto(order);
+    public OrderDto create(OrderDto orderDto, String idempotencyKey, String fingerprint) {
+        return retryExecutor.execute("order.create", () -> transactionTemplate.execute(status -> {
+            OrderDto created = doCreate(orderDto);
+            idempotencyKeyRepository.saveAndFlush(IdempotencyKey.builder()
+                    .key(idempotencyKey)
+                    .fingerprint(fingerprint)
+                    .orderId(created.getId())
+                    .created(created.getCreated())
+                    .build());
+            return created;
+        }));
     }
 
-
-    @Scheduled(fixedDelay = 60000)
-    @Transactional
-    public void expireOrders() {
-        List<Order> orders = orderRepository.findByStatusAndCreatedBefore(OrderStatus.CREATED, new Date(getExpirationTime()));
-        for(Order order : orders) {
-            expireOrder(order);
-        }
+    public List<BatchOrderResult> createAll(List<OrderDto> orderDtos) {
+        return retryExecutor.execute("order.create-all", () -> transactionTemplate.execute(status -> doCreateAll(orderDtos)));
     }
 
-    private void expireOrder(Order order) {
-        changeStatus(order, OrderStatus.CANCELLED);
-        updateCancelledProducts(order);
+    @Transactional(readOnly = true)
+    public OrderDto get(Long id) {
+        List<OrderDto> orders = fromRows(orderRepository.findItemRows(Collections.singleton(id)));
+        if(orders.isEmpty()) {
+            orders = fromRows(archivedOrderRepository.findItemRows(Collections.singleton(id)));
+        }
+        if(orders.isEmpty()) {
+            throw new ResponseStatusException(NOT_FOUND, "Unable to find order with id " + id);
+        }
+        return orders.get(0);
     }
 
-    private Map<Long, Product> updateProducts(OrderDto orderDto) {
-        Map<Long, Product> products = getMapOfProducts(orderDto);
-        updateStocks(products, orderDto.getItems());
-        checkAvailability(products);
-        productRepository.saveAll(products.values());
-        return products;
+    @Transactional(readOnly = true)
+    public KeysetPage<OrderDto> getPage(Long afterId, int limit, OrderStatus status, Date from, Date to) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_LIMIT);
+        List<Long> ids = orderRepository.findIdsPage(afterId == null ? 0L : afterId, getStatuses(status),
+                getFrom(from), getTo(to), PageRequest.of(0, pageSize));
+        return KeysetPage.<OrderDto>builder()
+                .items(ids.isEmpty() ? Collections.emptyList() : fromRows(orderRepository.findItemRows(ids)))
+                .nextAfterId(ids.size() == pageSize ? ids.get(ids.size() - 1) : null)
+                .build();
     }
 
-    private Iterable<Item> storeItems(OrderDto orderDto, Map<Long, Product> products) {
-        List<Item> items = createItems(orderDto, products);
-        return itemRepository.saveAll(items);
+    @Transactional(readOnly = true)
+    public void export(OrderStatus status, Date from, Date to, Consumer<OrderDto> consumer) {
+        try (Stream<OrderItemRow> rows = orderRepository.streamItemRows(getStatuses(status), getFrom(from), getTo(to))) {
+            OrderDto current = null;
+            for(Iterator<OrderItemRow> it = rows.iterator(); it.hasNext(); ) {
+                OrderItemRow row = it.next();
+                if(current == null || !current.getId().equals(row.getOrderId())) {
+                    if(current != null) {
+                        current.setTotal(getTotal(current.getItems()));
+                        consumer.accept(current);
+                    }
+                    current = toDto(row);
+                }
+                addItem(current, row);
+            }
+            if(current != null) {
+                current.setTotal(getTotal(current.getItems()));
+                consumer.accept(current);
+            }
+        }
     }
 
-    private Map<Long, Product> getMapOfProducts(OrderDto orderDto) {
-        return StreamSupport.stream(productRepository.findAllById(getProductIds(orderDto)).spliterator(), false)
-                .collect(Collectors.toMap(Product::getId, Function.identity()));
+    public OrderDto updateStatus(Long id, OrderStatus status) {
+        return retryExecutor.execute("order.status", () -> transactionTemplate.execute(tx -> {
+            Order order = storeStatus(id, status);
+            if(status == OrderStatus.CANCELLED) {
+                updateCancelledProducts(order);
+            }
+            return toDto(order);
+        }));
     }
 
 
-    private Iterable<Long> getProductIds(OrderDto orderDto) {
-        return orderDto.getItems().stream()
-                .map(ItemDto::getProductId)
-                .collect(Collectors.toList());
+    @Scheduled(fixedDelayString = "${products.expiry.safety-net-delay:600000}")
+    public void expireOrders() {
+        orderExpiryService.expire(orderExpiryService.getExpiration());
     }
 
-    private void updateStocks(Map<Long, Product> products, List<ItemDto> items) {
-        items.forEach(i -> updateStock(products.get(i.getProductId()), i));
+    private OrderDto doCreate(OrderDto orderDto) {
+        OrderLines lines = OrderLines.of(orderDto.getItems());
+        BigDecimal[] unitPrices = orderMetrics.time(Stage.PRICE, () -> priceCatalog.get(lines));
+        orderMetrics.time(Stage.RESERVE, () -> reserve(lines));
+        Iterable<Item> items = orderMetrics.time(Stage.STORE_ITEMS, () -> storeItems(lines, unitPrices));
+        Order order = orderMetrics.time(Stage.CREATE_ORDER, () -> createOrder(items));
+        return orderMetrics.time(Stage.TO_DTO, () -> toDto(order));
     }
 
-    private void updateStock(Product product, ItemDto i) {
-        if(product == null) {
-            throw new ResponseStatusException(NOT_FOUND, "Product not found with id " + i.getProductId());
+    private List<BatchOrderResult> doCreateAll(List<OrderDto> orderDtos) {
+        Set<Long> productIds = getProductIds(orderDtos);
+        stockService.preload(productIds);
+        priceCatalog.preload(productIds);
+        List<BatchOrderResult> results = new ArrayList<>(orderDtos.size());
+        List<Order> orders = new ArrayList<>();
+        List<Item> items = new ArrayList<>();
+        for(OrderDto orderDto : orderDtos) {
+            OrderLines lines;
+            BigDecimal[] unitPrices;
+            try {
+                lines = OrderLines.of(orderDto.getItems());
+                unitPrices = priceCatalog.get(lines);
+                reserve(lines);
+            } catch(MissingStockException ex) {
+                results.add(BatchOrderResult.builder().error(MissingMessage.of(ex)).build());
+                continue;
+            } catch(ResponseStatusException ex) {
+                results.add(BatchOrderResult.builder().error(MissingMessage.builder().error(ex.getReason()).build()).build());
+                continue;
+            }
+            Order order = newOrder(createItems(lines, unitPrices));
+            items.addAll(order.getItems());
+            orders.add(order);
+            results.add(null);
         }
-        product.setStock(product.getStock() - i.getQuantity());
-    }
-
-    private void checkAvailability(Map<Long, Product> products) {
-        List<ItemDto> missingItems = products.values().stream()
-                .filter(p -> p.getStock()<0)
-                .map(p -> ItemDto.builder()
-                        .productId(p.getId())
-                        .quantity(-p.getStock())
-                        .build())
-                .collect(Collectors.toList());
-        if(!missingItems.isEmpty()) {
-            throw new MissingStockException("Unable to create order as long as there are missing stock", missingItems);
+        itemRepository.saveAll(items);
+        orderRepository.saveAll(orders).forEach(o -> orderExpiryService.schedule(o.getId(), o.getCreated()));
+        Iterator<Order> stored = orders.iterator();
+        for(int i = 0; i < results.size(); i++) {
+            if(results.get(i) == null) {
+                results.set(i, BatchOrderResult.builder().order(toDto(stored.next())).build());
+            }
         }
+        return results;
     }
 
+    private void reserve(OrderLines lines) {
+        try {
+            stockService.reserve(lines);
+        } catch(MissingStockException ex) {
+            orderMetrics.rejected(ex.getItems());
+            throw ex;
+        }
+    }
 
-    private List<Item> createItems(OrderDto orderDto, Map<Long, Product> products) {
-        return orderDto.getItems().stream()
-                .map(i -> Item.builder()
-                        .quantity(i.getQuantity())
-                        .product(products.get(i.getProductId()))
-                        .build())
-                .collect(Collectors.toList());
+    private Iterable<Item> storeItems(OrderLines lines, BigDecimal[] unitPrices) {
+        List<Item> items = createItems(lines, unitPrices);
+        return itemRepository.saveAll(items);
+    }
+
+    private List<Item> createItems(OrderLines lines, BigDecimal[] unitPrices) {
+        List<Item> items = new ArrayList<>(lines.size());
+        for(int i = 0; i < lines.size(); i++) {
+            items.add(Item.builder()
+                    .quantity(lines.quantity(i))
+                    .unitPrice(unitPrices[i])
+                    .product(productRepository.getReferenceById(lines.productId(i)))
+                    .build());
+        }
+        return items;
     }
 
     private Order createOrder(Iterable<Item> items) {
+        Order order = orderRepository.save(newOrder(items));
+        orderExpiryService.schedule(order.getId(), order.getCreated());
+        return order;
+    }
+
+    private Order newOrder(Iterable<Item> items) {
         Order order = new Order();
         items.forEach(i -> order.getItems().add(i));
         order.setStatus(OrderStatus.CREATED);
         order.setCreated(new Date());
-        return orderRepository.save(order);
+        return order;
+    }
+
+    private Collection<OrderStatus> getStatuses(OrderStatus status) {
+        return status == null ? EnumSet.allOf(OrderStatus.class) : EnumSet.of(status);
+    }
+
+    private Date getFrom(Date from) {
+        return from == null ? new Date(0) : from;
+    }
+
+    private Date getTo(Date to) {
+        return to == null ? new Date(MAX_DATE) : to;
+    }
+
+    private Set<Long> getProductIds(List<OrderDto> orderDtos) {
+        Set<Long> productIds = new HashSet<>();
+        for(OrderDto orderDto : orderDtos) {
+            if(orderDto.getItems() != null) {
+                for(ItemDto item : orderDto.getItems()) {
+                    if(item.getProductId() != null) {
+                        productIds.add(item.getProductId());
+                    }
+                }
+            }
+        }
+        return productIds;
     }
 
     private OrderDto toDto(Order order) {
+        List<ItemDto> items = toDtos(order.getItems());
         return OrderDto.builder()
                 .id(order.getId())
-                .items(toDtos(order.getItems()))
+                .items(items)
                 .status(order.getStatus())
                 .created(order.getCreated())
+                .total(getTotal(items))
+                .build();
+    }
+
+    private List<OrderDto> fromRows(List<OrderItemRow> rows) {
+        Map<Long, OrderDto> orders = new LinkedHashMap<>();
+        rows.forEach(r -> addItem(orders.computeIfAbsent(r.getOrderId(), id -> toDto(r)), r));
+        orders.values().forEach(o -> o.setTotal(getTotal(o.getItems())));
+        return new ArrayList<>(orders.values());
+    }
+
+    private OrderDto toDto(OrderItemRow row) {
+        return OrderDto.builder()
+                .id(row.getOrderId())
+                .items(new ArrayList<>())
+                .status(row.getStatus())
+                .created(row.getCreated())
                 .build();
     }
 
+    private void addItem(OrderDto orderDto, OrderItemRow row) {
+        if(row.getProductId() != null) {
+            orderDto.getItems().add(ItemDto.builder()
+                    .productId(row.getProductId())
+                    .quantity(row.getQuantity())
+                    .unitPrice(row.getUnitPrice())
+                    .total(getLineTotal(row.getUnitPrice(), row.getQuantity()))
+                    .build());
+        }
+    }
+
     private List<ItemDto> toDtos(List<Item> items) {
-        return items.stream()
-                .map(i -> ItemDto.builder()
-                        .quantity(i.getQuantity())
-                        .productId(i.getProduct().getId())
-                        .build()).collect(Collectors.toList());
+        List<ItemDto> dtos = new ArrayList<>(items.size());
+        for(Item item : items) {
+            dtos.add(ItemDto.builder()
+                    .quantity(item.getQuantity())
+                    .productId(item.getProduct().getId())
+                    .unitPrice(item.getUnitPrice())
+                    .total(getLineTotal(item.getUnitPrice(), item.getQuantity()))
+                    .build());
+        }
+        return dtos;
     }
 
-    private boolean isOrderExpired(Order existingOrder) {
-        return existingOrder.getCreated().getTime() < getExpirationTime();
+    private BigDecimal getLineTotal(BigDecimal unitPrice, int quantity) {
+        return unitPrice == null ? null : unitPrice.multiply(BigDecimal.valueOf(quantity));
     }
 
-    private long getExpirationTime() {
-        return new Date().getTime() - 30 * 60 * 1000;
+    /**
+     * Sum of the line totals, or null when a line was stored before prices were snapshotted on items.
+     */
+    private BigDecimal getTotal(List<ItemDto> items) {
+        BigDecimal total = BigDecimal.ZERO.setScale(PriceCatalog.SCALE);
+        for(ItemDto item : items) {
+            if(item.getTotal() == null) {
+                return null;
+            }
+            total = total.add(item.getTotal());
+        }
+        return total;
+    }
+
+    private boolean isOrderExpired(Order existingOrder) {
+        return existingOrder.getCreated().before(orderExpiryService.getExpiration());
     }
 
     private Order storeStatus(Long id, OrderStatus status) {
-        Optional<Order> optOrder = orderRepository.findById(id);
+        Optional<Order> optOrder = orderRepository.findWithItemsById(id);
         if(!optOrder.isPresent()) {
+            archivedOrderRepository.findById(id).ifPresent(o -> {
+                throw new ResponseStatusException(CONFLICT, "Order with id " + id + " has status " + o.getStatus());
+            });
             throw new ResponseStatusException(NOT_FOUND, "Unable to find order with id " +id);
         }
         Order order = optOrder.get();
@@ -189,16 +373,7 @@ public class OrderService {
     }
 
     private void updateCancelledProducts(Order order) {
-        List<Product> products = order.getItems().stream()
-                .map(this::updateCancelled)
-                .collect(Collectors.toList());
-        productRepository.saveAll(products);
-    }
-
-    private Product updateCancelled(Item item) {
-        Product product = item.getProduct();
-        product.setStock(product.getStock() + item.getQuantity());
-        return product;
+        order.getItems().forEach(i -> stockService.release(i.getProduct().getId(), i.getQuantity(), StockMovementReason.CANCELLATION));
     }
 
 }
@@ -0,0 +1,152 @@
+package com.esteban.products.services;
+
+import com.esteban.products.repositories.ProductPrice;
+import com.esteban.products.repositories.ProductRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+/**
+ * In-memory snapshot of the product prices used to price new orders, as decimals rounded half up to {@value #SCALE}
+ * places and tagged with the product version they were read at. Prices missing from the snapshot are loaded in one
+ * query per order. A price change replaces its own entry only if it carries a newer version, so a late writer never
+ * brings an older price back and the rest of the snapshot stays in place.
+ * Invalidated entries keep their version without a price, and a load that started before the last invalidation is
+ * returned to its caller but not cached, so a slow reader cannot put back a price read before the change.
+ */
+@Component
+public class PriceCatalog {
+
+    public static final int SCALE = 2;
+
+    private final ProductRepository productRepository;
+
+    private final Cache<Long, Price> prices;
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Autowired
+    public PriceCatalog(ProductRepository productRepository,
+                        @Value("${products.prices.maximum-size:100000}") long maximumSize,
+                        @Value("${products.prices.ttl:3600000}") long ttl) {
+        this.productRepository = productRepository;
+        this.prices = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(ttl))
+                .build();
+    }
+
+    /**
+     * Unit prices of the lines, indexed like the lines.
+     */
+    public BigDecimal[] get(OrderLines lines) {
+        BigDecimal[] unitPrices = new BigDecimal[lines.size()];
+        List<Long> missing = null;
+        for(int i = 0; i < lines.size(); i++) {
+            unitPrices[i] = getIfPresent(lines.productId(i));
+            if(unitPrices[i] == null) {
+                if(missing == null) {
+                    missing = new ArrayList<>();
+                }
+                missing.add(lines.productId(i));
+            }
+        }
+        if(missing == null) {
+            return unitPrices;
+        }
+        Map<Long, BigDecimal> loaded = load(missing);
+        for(int i = 0; i < lines.size(); i++) {
+            if(unitPrices[i] == null) {
+                unitPrices[i] = loaded.get(lines.productId(i));
+                if(unitPrices[i] == null) {
+                    throw new ResponseStatusException(NOT_FOUND, "Product not found with id " + lines.productId(i));
+                }
+            }
+        }
+        return unitPrices;
+    }
+
+    public void preload(Collection<Long> productIds) {
+        List<Long> missing = new ArrayList<>();
+        for(Long id : productIds) {
+            if(getIfPresent(id) == null) {
+                missing.add(id);
+            }
+        }
+        if(!missing.isEmpty()) {
+            load(missing);
+        }
+    }
+
+    public void update(Long productId, long version, double price) {
+        put(productId, new Price(version, toAmount(price)));
+    }
+
+    public void invalidate(Collection<Long> productIds) {
+        invalidations.incrementAndGet();
+        for(Long id : productIds) {
+            prices.asMap().computeIfPresent(id, (key, price) -> new Price(price.version, null));
+        }
+    }
+
+    public void remove(Long productId) {
+        invalidate(Collections.singleton(productId));
+    }
+
+    public static BigDecimal toAmount(double price) {
+        return BigDecimal.valueOf(price).setScale(SCALE, RoundingMode.HALF_UP);
+    }
+
+    private BigDecimal getIfPresent(Long productId) {
+        Price price = prices.getIfPresent(productId);
+        return price == null ? null : price.amount;
+    }
+
+    private Map<Long, BigDecimal> load(List<Long> productIds) {
+        long invalidation = invalidations.get();
+        Map<Long, BigDecimal> loaded = new HashMap<>();
+        for(ProductPrice found : productRepository.findPrices(productIds)) {
+            Price price = new Price(found.getVersion(), toAmount(found.getPrice()));
+            loaded.put(found.getId(), price.amount);
+            put(found.getId(), price);
+            if(invalidations.get() != invalidation) {
+                prices.asMap().remove(found.getId(), price);
+            }
+        }
+        return loaded;
+    }
+
+    private void put(Long productId, Price price) {
+        prices.asMap().merge(productId, price, (current, updated) -> updated.version >= current.version ? updated : current);
+    }
+
+    private static final class Price {
+
+        private final long version;
+
+        private final BigDecimal amount;
+
+        private Price(long version, BigDecimal amount) {
+            this.version = version;
+            this.amount = amount;
+        }
+
+    }
+
+}
@@ -0,0 +1,293 @@
+package com.esteban.products.services;
+
+import com.esteban.products.entities.Product;
+import com.esteban.products.model.ImportReport;
+import com.esteban.products.model.ProductDto;
+import com.esteban.products.repositories.ProductRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+/**
+ * Streams a JSON array or a CSV file of products and upserts them in chunks of
+ * {@code products.import.batch-size}, each one in its own transaction, so only one chunk is held in memory.
+ * Products with an id are updated with one JDBC batch, the others are inserted with Hibernate batching.
+ */
+@Service
+public class ProductImportService {
+
+    private static final int MAX_ERRORS = 100;
+
+    private final ProductRepository productRepository;
+
+    private final ProductService productService;
+
+    private final StockService stockService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final int batchSize;
+
+    @Autowired
+    public ProductImportService(ProductRepository productRepository, ProductService productService, StockService stockService,
+                                TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+                                @Value("${products.import.batch-size:1000}") int batchSize) {
+        this.productRepository = productRepository;
+        this.productService = productService;
+        this.stockService = stockService;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    public ImportReport importJson(InputStream body) throws IOException {
+        ImportReport report = new ImportReport();
+        long start = System.nanoTime();
+        List<ProductDto> chunk = new ArrayList<>(batchSize);
+        try(JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if(parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new ResponseStatusException(BAD_REQUEST, "A JSON array of products is expected");
+            }
+            JsonToken token;
+            while((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if(token == null) {
+                    throw new ResponseStatusException(BAD_REQUEST, "Unterminated JSON array after " + report.getReceived() + " products");
+                }
+                JsonNode node = parser.readValueAsTree();
+                if(!node.isObject()) {
+                    report.setReceived(report.getReceived() + 1);
+                    fail(report, "Product " + report.getReceived() + ": a JSON object is expected");
+                    continue;
+                }
+                try {
+                    add(chunk, objectMapper.treeToValue(node, ProductDto.class), report);
+                } catch(JsonMappingException ex) {
+                    report.setReceived(report.getReceived() + 1);
+                    fail(report, "Product " + report.getReceived() + ": " + ex.getOriginalMessage());
+                }
+            }
+        } catch(JsonProcessingException ex) {
+            throw new ResponseStatusException(BAD_REQUEST, "Malformed JSON after " + report.getReceived() + " products", ex);
+        }
+        write(chunk, report);
+        report.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    public ImportReport importCsv(InputStream body) throws IOException {
+        ImportReport report = new ImportReport();
+        long start = System.nanoTime();
+        List<ProductDto> chunk = new ArrayList<>(batchSize);
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if(header == null) {
+                throw new ResponseStatusException(BAD_REQUEST, "A CSV header is expected");
+            }
+            Map<String, Integer> columns = getColumns(header);
+            String line;
+            int lineNumber = 1;
+            while((line = reader.readLine()) != null) {
+                lineNumber++;
+                if(line.isBlank()) {
+                    continue;
+                }
+                try {
+                    add(chunk, toDto(columns, split(line)), report);
+                } catch(IllegalArgumentException ex) {
+                    report.setReceived(report.getReceived() + 1);
+                    fail(report, "Line " + lineNumber + ": " + ex.getMessage());
+                }
+            }
+        }
+        write(chunk, report);
+        report.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    private void add(List<ProductDto> chunk, ProductDto product, ImportReport report) {
+        report.setReceived(report.getReceived() + 1);
+        if(product.getName() == null || product.getName().isBlank() || product.getStock() < 0) {
+            fail(report, "Product " + report.getReceived() + ": a name and a non negative stock are required");
+            return;
+        }
+        chunk.add(product);
+        if(chunk.size() == batchSize) {
+            write(chunk, report);
+        }
+    }
+
+    private void write(List<ProductDto> chunk, ImportReport report) {
+        if(chunk.isEmpty()) {
+            return;
+        }
+        ImportReport written = new ImportReport();
+        List<Long> ids = new ArrayList<>(chunk.size());
+        List<StockAdjustment> adjustments = new ArrayList<>(chunk.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Long, ProductDto> updates = new LinkedHashMap<>();
+                List<Product> inserts = new ArrayList<>();
+                chunk.forEach(p -> {
+                    if(p.getId() == null) {
+                        inserts.add(toEntity(p));
+                    } else {
+                        updates.put(p.getId(), p);
+                    }
+                });
+                update(updates, written, ids, adjustments);
+                productRepository.saveAll(inserts).forEach(p -> {
+                    adjustments.add(new StockAdjustment(p.getId(), 0, p.getStock()));
+                    ids.add(p.getId());
+                });
+                written.setCreated(inserts.size());
+            });
+            adjustments.forEach(a -> stockService.adjust(a.productId, a.previousStock, a.stock));
+            productService.invalidate(ids, written.getCreated() > 0);
+            report.setCreated(report.getCreated() + written.getCreated());
+            report.setUpdated(report.getUpdated() + written.getUpdated());
+            written.getErrors().forEach(e -> fail(report, e));
+        } catch(RuntimeException ex) {
+            report.setFailed(report.getFailed() + chunk.size());
+            if(report.getErrors().size() < MAX_ERRORS) {
+                report.getErrors().add("Unable to store " + chunk.size() + " products: " + ex.getMessage());
+            }
+        }
+        chunk.clear();
+    }
+
+    private void update(Map<Long, ProductDto> updates, ImportReport written, List<Long> ids,
+                        List<StockAdjustment> adjustments) {
+        if(updates.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> previousStocks = new HashMap<>();
+        productRepository.findStocks(updates.keySet()).forEach(p -> previousStocks.put(p.getId(), p.getStock()));
+        List<Product> products = new ArrayList<>(previousStocks.size());
+        updates.forEach((id, p) -> {
+            if(previousStocks.containsKey(id)) {
+                Product product = toEntity(p);
+                product.setId(id);
+                products.add(product);
+            } else {
+                written.getErrors().add("Unable to find product with id " + id);
+            }
+        });
+        productRepository.updateProducts(products);
+        products.forEach(p -> {
+            adjustments.add(new StockAdjustment(p.getId(), previousStocks.get(p.getId()), p.getStock()));
+            ids.add(p.getId());
+        });
+        written.setUpdated(products.size());
+    }
+
+    private void fail(ImportReport report, String error) {
+        report.setFailed(report.getFailed() + 1);
+        if(report.getErrors().size() < MAX_ERRORS) {
+            report.getErrors().add(error);
+        }
+    }
+
+    private Map<String, Integer> getColumns(String header) {
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = split(header);
+        for(int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if(!columns.containsKey("name") || !columns.containsKey("stock") || !columns.containsKey("price")) {
+            throw new ResponseStatusException(BAD_REQUEST, "CSV header must have name, stock and price columns");
+        }
+        return columns;
+    }
+
+    private ProductDto toDto(Map<String, Integer> columns, List<String> fields) {
+        String id = get(columns, fields, "id");
+        return ProductDto.builder()
+                .id(id == null || id.isEmpty() ? null : Long.valueOf(id))
+                .name(get(columns, fields, "name"))
+                .stock(Integer.parseInt(get(columns, fields, "stock")))
+                .price(Double.parseDouble(get(columns, fields, "price")))
+                .build();
+    }
+
+    private String get(Map<String, Integer> columns, List<String> fields, String column) {
+        Integer index = columns.get(column);
+        if(index == null) {
+            return null;
+        }
+        if(index >= fields.size()) {
+            throw new IllegalArgumentException("missing " + column);
+        }
+        return fields.get(index).trim();
+    }
+
+    private List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for(int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if(quoted) {
+                if(c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if(c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if(c == '"') {
+                quoted = true;
+            } else if(c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private Product toEntity(ProductDto productDto) {
+        return Product.builder()
+                .name(productDto.getName())
+                .price(productDto.getPrice())
+                .stock(productDto.getStock())
+                .build();
+    }
+
+    /**
+     * Stock change of one product, applied to the ledger only once its chunk has committed.
+     */
+    @AllArgsConstructor
+    private static class StockAdjustment {
+
+        private final Long productId;
+
+        private final int previousStock;
+
+        private final int stock;
+
+    }
+
+}
@@ -1,46 +1,176 @@
 package com.esteban.products.services;
 
 import com.esteban.products.entities.Product;
+import com.esteban.products.model.KeysetPage;
 import com.esteban.products.model.ProductDto;
 import com.esteban.products.repositories.ProductRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 
 @Service
 public class ProductService {
 
+    private static final int MAX_LIMIT = 1000;
+
     private final ProductRepository productRepository;
 
+    private final StockService stockService;
+
+    private final PriceCatalog priceCatalog;
+
+    private final Cache<Long, ProductDto> products;
+
+    private final Cache<PageKey, List<Long>> productIds;
+
     @Autowired
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, StockService stockService,
+                          PriceCatalog priceCatalog, @Value("${products.cache.maximum-size:10000}") long maximumSize,
+                          @Value("${products.cache.ttl:600000}") long ttl) {
         this.productRepository = productRepository;
+        this.stockService = stockService;
+        this.priceCatalog = priceCatalog;
+        this.products = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(ttl))
+                .build();
+        this.productIds = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(ttl))
+                .build();
+    }
+
+    public ProductDto get(Long id) {
+        ProductDto product = products.get(id, key -> productRepository.findById(key).map(this::toDto).orElse(null));
+        if(product == null) {
+            throw new ResponseStatusException(NOT_FOUND, "Unable to find product with id " + id);
+        }
+        return withAvailableStock(product);
+    }
+
+    public KeysetPage<ProductDto> getPage(Long afterId, int limit) {
+        PageKey pageKey = new PageKey(afterId == null ? 0L : afterId, Math.min(Math.max(limit, 1), MAX_LIMIT));
+        List<Long> ids = productIds.get(pageKey, key -> productRepository.findIdsAfter(key.afterId, PageRequest.of(0, key.limit)));
+        Map<Long, ProductDto> found = products.getAll(ids, this::load);
+        List<ProductDto> items = ids.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .map(this::withAvailableStock)
+                .collect(Collectors.toList());
+        return KeysetPage.<ProductDto>builder()
+                .items(items)
+                .nextAfterId(ids.size() == pageKey.limit ? ids.get(ids.size() - 1) : null)
+                .build();
     }
 
     public ProductDto create(ProductDto productDto) {
         Product product = productRepository.save(toEntity(productDto));
-        return toDto(product);
+        stockService.adjust(product.getId(), 0, product.getStock());
+        priceCatalog.update(product.getId(), product.getVersion(), product.getPrice());
+        ProductDto created = toDto(product);
+        products.put(created.getId(), created);
+        productIds.invalidateAll();
+        return created;
     }
 
     public void delete(Long id) {
         try {
-            productRepository.deleteById(id);
-        }catch(EmptyResultDataAccessException ex) {
-            throw new ResponseStatusException(NOT_FOUND, "Unable to find product with id " + id, ex);
+            Product product = productRepository.findById(id)
+                    .orElseThrow( () -> new ResponseStatusException(NOT_FOUND, "Unable to find product with id " + id));
+            productRepository.delete(product);
+            stockService.remove(id);
+        } finally {
+            products.invalidate(id);
+            priceCatalog.remove(id);
+            productIds.invalidateAll();
         }
     }
 
     public ProductDto update(Long id, ProductDto productDto) {
+        try {
+            return store(id, productDto);
+        } catch(ObjectOptimisticLockingFailureException ex) {
+            throw new ResponseStatusException(CONFLICT, "Product with id " + id + " was modified concurrently", ex);
+        }
+    }
+
+    public void preload(Collection<Long> ids) {
+        products.getAll(ids, this::load);
+    }
+
+    public void invalidate(Collection<Long> ids, boolean created) {
+        products.invalidateAll(ids);
+        priceCatalog.invalidate(ids);
+        if(created) {
+            productIds.invalidateAll();
+        }
+    }
+
+    public SseEmitter subscribeStockLevels() {
+        return stockService.subscribeLevels();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(StockChangedEvent event) {
+        products.invalidateAll(event.getProductIds());
+    }
+
+    private ProductDto store(Long id, ProductDto productDto) {
         Product product = productRepository.findById(id)
                 .orElseThrow( () -> new ResponseStatusException(NOT_FOUND, "Unable to find product with id " + id));
+        int previousStock = product.getStock();
         product.setStock(productDto.getStock());
         product.setName(productDto.getName());
         product.setPrice(productDto.getPrice());
         product = productRepository.save(product);
-        return toDto(product);
+        stockService.adjust(id, previousStock, product.getStock());
+        priceCatalog.update(id, product.getVersion(), product.getPrice());
+        ProductDto updated = toDto(product);
+        products.put(id, updated);
+        return updated;
+    }
+
+    private Map<Long, ProductDto> load(Iterable<? extends Long> ids) {
+        List<Long> missing = new ArrayList<>();
+        ids.forEach(missing::add);
+        return productRepository.findAllById(missing).stream()
+                .collect(Collectors.toMap(Product::getId, this::toDto));
+    }
+
+    private ProductDto withAvailableStock(ProductDto product) {
+        Integer available = stockService.peek(product.getId());
+        return ProductDto.builder()
+                .id(product.getId())
+                .name(product.getName())
+                .price(product.getPrice())
+                .stock(available == null ? product.getStock() : available)
+                .build();
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class PageKey {
+
+        private final long afterId;
+
+        private final int limit;
+
     }
 
     private Product toEntity(ProductDto productDto) {
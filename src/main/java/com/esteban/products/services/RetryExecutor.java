@@ -0,0 +1,122 @@
+package com.esteban.products.services;
+
+import com.esteban.products.entities.Product;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs a transactional operation again when it loses an optimistic version check or a lock,
+ * up to {@code products.retry.max-attempts} times with full-jitter exponential backoff. Retries are drawn from a
+ * shared budget refilled by {@code products.retry.budget-ratio} per call, so a conflict storm cannot multiply the load.
+ * Called inside an outer transaction, the operation runs once and the conflict is left to the outer boundary.
+ */
+@Component
+public class RetryExecutor {
+
+    private static final long TOKEN = 1000;
+
+    private final MeterRegistry registry;
+
+    private final OrderMetrics orderMetrics;
+
+    private final int maxAttempts;
+
+    private final long backoff;
+
+    private final long maxBackoff;
+
+    private final long deposit;
+
+    private final long capacity;
+
+    private final AtomicLong budget;
+
+    @Autowired
+    public RetryExecutor(MeterRegistry registry, OrderMetrics orderMetrics,
+                         @Value("${products.retry.max-attempts:3}") int maxAttempts,
+                         @Value("${products.retry.backoff:5}") long backoff,
+                         @Value("${products.retry.max-backoff:100}") long maxBackoff,
+                         @Value("${products.retry.budget-ratio:0.1}") double budgetRatio,
+                         @Value("${products.retry.budget-burst:20}") int budgetBurst) {
+        this.registry = registry;
+        this.orderMetrics = orderMetrics;
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+        this.deposit = (long) (budgetRatio * TOKEN);
+        this.capacity = budgetBurst * TOKEN;
+        this.budget = new AtomicLong(capacity);
+    }
+
+    public <T> T execute(String operation, Supplier<T> supplier) {
+        if(TransactionSynchronizationManager.isActualTransactionActive()) {
+            return supplier.get();
+        }
+        budget.accumulateAndGet(deposit, (current, added) -> Math.min(capacity, current + added));
+        for(int attempt = 1; ; attempt++) {
+            try {
+                return supplier.get();
+            } catch(ConcurrencyFailureException ex) {
+                conflict(operation, ex);
+                if(attempt >= maxAttempts) {
+                    exhausted(operation, "attempts");
+                    throw ex;
+                }
+                if(!withdraw()) {
+                    exhausted(operation, "budget");
+                    throw ex;
+                }
+                registry.counter("products.retry.retries", "operation", operation).increment();
+                sleep(attempt, ex);
+            }
+        }
+    }
+
+    private void conflict(String operation, ConcurrencyFailureException ex) {
+        registry.counter("products.retry.conflicts", "operation", operation).increment();
+        if(ex instanceof ObjectOptimisticLockingFailureException) {
+            ObjectOptimisticLockingFailureException optimistic = (ObjectOptimisticLockingFailureException) ex;
+            if(Product.class.getName().equals(optimistic.getPersistentClassName()) && optimistic.getIdentifier() != null) {
+                orderMetrics.stockConflict(optimistic.getIdentifier());
+            }
+        }
+    }
+
+    private void exhausted(String operation, String reason) {
+        registry.counter("products.retry.exhausted", "operation", operation, "reason", reason).increment();
+    }
+
+    private boolean withdraw() {
+        long current;
+        do {
+            current = budget.get();
+            if(current < TOKEN) {
+                return false;
+            }
+        } while(!budget.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    private void sleep(int attempt, ConcurrencyFailureException ex) {
+        long ceiling = Math.min(maxBackoff, backoff << Math.min(attempt - 1, 20));
+        if(ceiling <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch(InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw ex;
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.esteban.products.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+
+@Getter
+@AllArgsConstructor
+public class StockChangedEvent {
+
+    private final Collection<Long> productIds;
+
+}
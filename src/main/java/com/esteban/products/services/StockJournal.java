@@ -0,0 +1,122 @@
+package com.esteban.products.services;
+
+import com.esteban.products.entities.StockMovement;
+import com.esteban.products.repositories.StockMovementRepository;
+import com.esteban.products.status.StockMovementReason;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Append-only journal of the stock movements. Movements are buffered once their transaction commits,
+ * applied to the {@link StockLevels} view and written to {@code p_stock_movement} in batches by {@link #flush()}.
+ */
+@Component
+public class StockJournal {
+
+    private final StockMovementRepository stockMovementRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final StockLevels stockLevels;
+
+    private final int batchSize;
+
+    private final Queue<StockMovement> pending = new ConcurrentLinkedQueue<>();
+
+    @Autowired
+    public StockJournal(StockMovementRepository stockMovementRepository, TransactionTemplate transactionTemplate,
+                        StockLevels stockLevels, @Value("${products.stock.journal.batch-size:500}") int batchSize) {
+        this.stockMovementRepository = stockMovementRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.stockLevels = stockLevels;
+        this.batchSize = batchSize;
+    }
+
+    public void recordReservation(OrderLines lines) {
+        afterCommit(() -> {
+            for(int i = 0; i < lines.size(); i++) {
+                append(lines.productId(i), -lines.quantity(i), StockMovementReason.RESERVATION);
+            }
+        });
+    }
+
+    public void record(Long productId, int delta, StockMovementReason reason) {
+        afterCommit(() -> append(productId, delta, reason));
+    }
+
+    public void recordAdjustment(Long productId, int previousStock, int stock) {
+        afterCommit(() -> {
+            pending.add(toMovement(productId, stock - previousStock, StockMovementReason.ADJUSTMENT));
+            stockLevels.set(productId, stock);
+        });
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${products.stock.journal.flush-delay:1000}")
+    public synchronized void flush() {
+        List<StockMovement> batch = new ArrayList<>(batchSize);
+        for(StockMovement movement = pending.poll(); movement != null; movement = pending.poll()) {
+            batch.add(movement);
+            if(batch.size() == batchSize) {
+                save(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if(!batch.isEmpty()) {
+            save(batch);
+        }
+    }
+
+    private void save(List<StockMovement> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> stockMovementRepository.saveAll(batch));
+        } catch(RuntimeException ex) {
+            batch.forEach(m -> m.setId(null));
+            pending.addAll(batch);
+            throw ex;
+        }
+    }
+
+    private void append(Long productId, int delta, StockMovementReason reason) {
+        if(delta == 0) {
+            return;
+        }
+        pending.add(toMovement(productId, delta, reason));
+        stockLevels.apply(productId, delta);
+    }
+
+    private StockMovement toMovement(Long productId, int delta, StockMovementReason reason) {
+        return StockMovement.builder()
+                .productId(productId)
+                .delta(delta)
+                .reason(reason)
+                .created(new Date())
+                .build();
+    }
+
+    private void afterCommit(Runnable runnable) {
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            runnable.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                runnable.run();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.esteban.products.services;
+
+import com.esteban.products.entities.Product;
+import com.esteban.products.error.MissingStockException;
+import com.esteban.products.repositories.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+/**
+ * In-memory view of the available stock of every product touched by an order.
+ * Reservations are admitted or rejected with CAS on per-product counters, and the
+ * resulting deltas are written back to {@code p_product.stock} in batches by {@link #flush()}, one flush at a time
+ * and once more on shutdown.
+ */
+@Component
+public class StockLedger {
+
+    private final ProductRepository productRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ConcurrentMap<Long, AtomicInteger> available = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, AtomicInteger> pending = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StockLedger(ProductRepository productRepository, TransactionTemplate transactionTemplate) {
+        this.productRepository = productRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public void reserve(OrderLines lines) {
+        load(lines.productIds());
+        int[] shortfalls = null;
+        for(int i = 0; i < lines.size(); i++) {
+            int missing = tryReserve(lines.productId(i), lines.quantity(i));
+            if(missing > 0) {
+                if(shortfalls == null) {
+                    shortfalls = new int[lines.size()];
+                }
+                shortfalls[i] = missing;
+            }
+        }
+        if(shortfalls != null) {
+            for(int i = 0; i < lines.size(); i++) {
+                if(shortfalls[i] == 0) {
+                    restore(lines.productId(i), lines.quantity(i));
+                }
+            }
+            throw new MissingStockException("Unable to create order as long as there are missing stock",
+                    lines.toMissingItems(shortfalls));
+        }
+        releaseOnRollback(lines);
+    }
+
+    public void release(Long productId, int quantity) {
+        load(Collections.singleton(productId));
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            restore(productId, quantity);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                restore(productId, quantity);
+            }
+        });
+    }
+
+    public int getAvailable(Long productId) {
+        load(Collections.singleton(productId));
+        return available.get(productId).get();
+    }
+
+    public Integer peek(Long productId) {
+        AtomicInteger counter = available.get(productId);
+        return counter == null ? null : counter.get();
+    }
+
+    public void preload(Collection<Long> productIds) {
+        List<Long> missing = null;
+        for(Long id : productIds) {
+            if(!available.containsKey(id)) {
+                if(missing == null) {
+                    missing = new ArrayList<>();
+                }
+                missing.add(id);
+            }
+        }
+        if(missing == null) {
+            return;
+        }
+        for(Product product : productRepository.findAllById(missing)) {
+            available.putIfAbsent(product.getId(), new AtomicInteger(product.getStock()));
+        }
+    }
+
+    /**
+     * Replaces the stock of a product with the absolute value just committed by an update or an import.
+     * A flush running meanwhile may add its delta on top of that value after the commit, so once reservations
+     * have touched the product, pending deltas are flushed and the value is written again under the flush monitor.
+     */
+    public synchronized void reset(Long productId, int stock) {
+        AtomicInteger counter = available.get(productId);
+        AtomicInteger delta = pending.get(productId);
+        if(delta != null) {
+            flush();
+        }
+        if(counter != null) {
+            counter.set(stock);
+        }
+        if(delta != null) {
+            delta.set(0);
+            transactionTemplate.executeWithoutResult(status -> productRepository.setStock(productId, stock));
+        }
+    }
+
+    public void remove(Long productId) {
+        available.remove(productId);
+        pending.remove(productId);
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${products.stock.flush-delay:1000}")
+    public synchronized void flush() {
+        Map<Long, Integer> deltas = drainPending();
+        if(deltas.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    deltas.forEach(productRepository::addStock));
+        } catch(RuntimeException ex) {
+            deltas.forEach(this::addPending);
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the missing quantity, zero when the quantity has been reserved.
+     */
+    private int tryReserve(Long productId, int quantity) {
+        AtomicInteger counter = available.get(productId);
+        int current;
+        do {
+            current = counter.get();
+            if(current < quantity) {
+                return quantity - current;
+            }
+        } while(!counter.compareAndSet(current, current - quantity));
+        addPending(productId, -quantity);
+        return 0;
+    }
+
+    private void restore(Long productId, int quantity) {
+        AtomicInteger counter = available.get(productId);
+        if(counter != null) {
+            counter.addAndGet(quantity);
+            addPending(productId, quantity);
+        }
+    }
+
+    private void releaseOnRollback(OrderLines reserved) {
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if(status != STATUS_COMMITTED) {
+                    for(int i = 0; i < reserved.size(); i++) {
+                        restore(reserved.productId(i), reserved.quantity(i));
+                    }
+                }
+            }
+        });
+    }
+
+    private void load(Collection<Long> productIds) {
+        preload(productIds);
+        for(Long id : productIds) {
+            if(!available.containsKey(id)) {
+                throw new ResponseStatusException(NOT_FOUND, "Product not found with id " + id);
+            }
+        }
+    }
+
+    private void addPending(Long productId, int delta) {
+        pending.computeIfAbsent(productId, id -> new AtomicInteger()).addAndGet(delta);
+    }
+
+    private Map<Long, Integer> drainPending() {
+        Map<Long, Integer> deltas = new HashMap<>();
+        pending.forEach((id, delta) -> {
+            int value = delta.getAndSet(0);
+            if(value != 0) {
+                deltas.put(id, value);
+            }
+        });
+        return deltas;
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.esteban.products.services;
+
+import com.esteban.products.model.StockLevelEvent;
+import com.esteban.products.status.StockLevel;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-product availability maintained from the committed stock movements. Products are seeded with their
+ * current stock the first time they are touched, and every change of {@link StockLevel} is pushed to the
+ * subscribed server-sent event streams.
+ * Each stream keeps only the latest pending event per product and is written by at most one task at a time,
+ * so a slow client delays its own stream without queueing unbounded events or holding back the others.
+ */
+@Component
+public class StockLevels {
+
+    private final int lowThreshold;
+
+    private final long streamTimeout;
+
+    private final ConcurrentMap<Long, AtomicInteger> levels = new ConcurrentHashMap<>();
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService dispatcher = newDispatcher();
+
+    @Autowired
+    public StockLevels(@Value("${products.stock.low-threshold:10}") int lowThreshold,
+                       @Value("${products.stock.events.timeout:1800000}") long streamTimeout) {
+        this.lowThreshold = lowThreshold;
+        this.streamTimeout = streamTimeout;
+    }
+
+    public boolean isTracked(Long productId) {
+        return levels.containsKey(productId);
+    }
+
+    public Integer get(Long productId) {
+        AtomicInteger level = levels.get(productId);
+        return level == null ? null : level.get();
+    }
+
+    public void seed(Long productId, int stock) {
+        levels.putIfAbsent(productId, new AtomicInteger(stock));
+    }
+
+    public void apply(Long productId, int delta) {
+        AtomicInteger level = levels.get(productId);
+        if(level != null) {
+            int stock = level.addAndGet(delta);
+            publish(productId, stock - delta, stock);
+        }
+    }
+
+    public void set(Long productId, int stock) {
+        AtomicInteger level = levels.putIfAbsent(productId, new AtomicInteger(stock));
+        if(level != null) {
+            publish(productId, level.getAndSet(stock), stock);
+        }
+    }
+
+    public void remove(Long productId) {
+        levels.remove(productId);
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(streamTimeout);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> {
+            subscribers.remove(subscriber);
+            emitter.complete();
+        });
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    @PreDestroy
+    public void close() {
+        dispatcher.shutdown();
+        subscribers.forEach(s -> s.emitter.complete());
+    }
+
+    private void publish(Long productId, int previous, int stock) {
+        StockLevel level = getLevel(stock);
+        if(level == getLevel(previous) || subscribers.isEmpty()) {
+            return;
+        }
+        StockLevelEvent event = StockLevelEvent.builder()
+                .productId(productId)
+                .stock(stock)
+                .level(level)
+                .build();
+        subscribers.forEach(s -> s.offer(event));
+    }
+
+    private StockLevel getLevel(int stock) {
+        if(stock <= 0) {
+            return StockLevel.OUT_OF_STOCK;
+        }
+        return stock <= lowThreshold ? StockLevel.LOW_STOCK : StockLevel.IN_STOCK;
+    }
+
+    private ExecutorService newDispatcher() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException ex) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private class Subscriber {
+
+        private final SseEmitter emitter;
+
+        private final ConcurrentMap<Long, StockLevelEvent> pending = new ConcurrentHashMap<>();
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(StockLevelEvent event) {
+            pending.put(event.getProductId(), event);
+            schedule();
+        }
+
+        private void schedule() {
+            if(draining.compareAndSet(false, true)) {
+                try {
+                    dispatcher.execute(this::drain);
+                } catch(RejectedExecutionException ex) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            for(Long productId : pending.keySet()) {
+                StockLevelEvent event = pending.remove(productId);
+                if(event != null && !send(event)) {
+                    return;
+                }
+            }
+            draining.set(false);
+            if(!pending.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private boolean send(StockLevelEvent event) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .name(event.getLevel().name())
+                        .data(event));
+                return true;
+            } catch(IOException | IllegalStateException ex) {
+                subscribers.remove(this);
+                pending.clear();
+                emitter.completeWithError(ex);
+                return false;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,230 @@
+package com.esteban.products.services;
+
+import com.esteban.products.error.MissingStockException;
+import com.esteban.products.model.ItemDto;
+import com.esteban.products.repositories.ProductRepository;
+import com.esteban.products.repositories.ProductStock;
+import com.esteban.products.status.StockMovementReason;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+/**
+ * Entry point for every stock change. Reservations are admitted either by the in-memory {@link StockLedger}
+ * or, with {@code products.stock.ledger.enabled=false}, by conditional decrements of {@code p_product.stock}.
+ * In the latter mode the lines of hot products are coalesced by the {@link HotStockCoalescer}.
+ * Every committed change is recorded in the {@link StockJournal}.
+ */
+@Service
+public class StockService {
+
+    private final StockLedger stockLedger;
+
+    private final HotStockCoalescer hotStockCoalescer;
+
+    private final StockJournal stockJournal;
+
+    private final StockLevels stockLevels;
+
+    private final ProductRepository productRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final boolean ledgerEnabled;
+
+    @Autowired
+    public StockService(StockLedger stockLedger, HotStockCoalescer hotStockCoalescer, StockJournal stockJournal,
+                        StockLevels stockLevels, ProductRepository productRepository, ApplicationEventPublisher eventPublisher,
+                        @Value("${products.stock.ledger.enabled:true}") boolean ledgerEnabled) {
+        this.stockLedger = stockLedger;
+        this.hotStockCoalescer = hotStockCoalescer;
+        this.stockJournal = stockJournal;
+        this.stockLevels = stockLevels;
+        this.productRepository = productRepository;
+        this.eventPublisher = eventPublisher;
+        this.ledgerEnabled = ledgerEnabled;
+    }
+
+    public void reserve(OrderLines lines) {
+        track(lines.productIds());
+        if(ledgerEnabled) {
+            stockLedger.reserve(lines);
+            stockJournal.recordReservation(lines);
+            return;
+        }
+        Map<Long, Integer> quantities = lines.toMap();
+        Map<Long, Integer> hotQuantities = new TreeMap<>();
+        for(Iterator<Map.Entry<Long, Integer>> it = quantities.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, Integer> entry = it.next();
+            if(hotStockCoalescer.isHot(entry.getKey())) {
+                hotQuantities.put(entry.getKey(), entry.getValue());
+                it.remove();
+            }
+        }
+        reserveInDatabase(quantities);
+        if(!hotQuantities.isEmpty()) {
+            reserveHot(hotQuantities, quantities);
+        }
+        stockJournal.recordReservation(lines);
+        eventPublisher.publishEvent(new StockChangedEvent(lines.productIds()));
+    }
+
+    public void release(Long productId, int quantity, StockMovementReason reason) {
+        track(Collections.singleton(productId));
+        stockJournal.record(productId, quantity, reason);
+        if(ledgerEnabled) {
+            stockLedger.release(productId, quantity);
+            return;
+        }
+        productRepository.addStock(productId, quantity);
+        hotStockCoalescer.invalidate(productId);
+        eventPublisher.publishEvent(new StockChangedEvent(Collections.singleton(productId)));
+    }
+
+    public void preload(Collection<Long> productIds) {
+        if(ledgerEnabled) {
+            stockLedger.preload(productIds);
+        }
+    }
+
+    public Integer peek(Long productId) {
+        return ledgerEnabled ? stockLedger.peek(productId) : null;
+    }
+
+    public SseEmitter subscribeLevels() {
+        return stockLevels.subscribe();
+    }
+
+    public void adjust(Long productId, int previousStock, int stock) {
+        Integer available = peek(productId);
+        stockJournal.recordAdjustment(productId, available == null ? previousStock : available, stock);
+        stockLedger.reset(productId, stock);
+        hotStockCoalescer.invalidate(productId);
+    }
+
+    public void remove(Long productId) {
+        stockLedger.remove(productId);
+        hotStockCoalescer.unflag(productId);
+        stockLevels.remove(productId);
+    }
+
+    private void track(Collection<Long> productIds) {
+        List<Long> missing = null;
+        for(Long id : productIds) {
+            if(!stockLevels.isTracked(id)) {
+                if(missing == null) {
+                    missing = new ArrayList<>();
+                }
+                missing.add(id);
+            }
+        }
+        if(missing == null) {
+            return;
+        }
+        if(ledgerEnabled) {
+            stockLedger.preload(missing);
+            missing.forEach(id -> {
+                Integer available = stockLedger.peek(id);
+                if(available != null) {
+                    stockLevels.seed(id, available);
+                }
+            });
+        } else {
+            productRepository.findStocks(missing).forEach(p -> stockLevels.seed(p.getId(), p.getStock()));
+        }
+    }
+
+    private void reserveInDatabase(Map<Long, Integer> quantities) {
+        if(quantities.isEmpty()) {
+            return;
+        }
+        int[] updated = productRepository.decrementStocks(quantities);
+        List<Long> failed = new ArrayList<>();
+        List<Long> applied = new ArrayList<>();
+        int line = 0;
+        for(Long id : quantities.keySet()) {
+            if(updated[line++] == 0) {
+                failed.add(id);
+            } else {
+                applied.add(id);
+            }
+        }
+        if(!failed.isEmpty()) {
+            applied.forEach(id -> productRepository.addStock(id, quantities.get(id)));
+            throw new MissingStockException("Unable to create order as long as there are missing stock",
+                    getMissingItems(failed, quantities));
+        }
+    }
+
+    private void reserveHot(Map<Long, Integer> hotQuantities, Map<Long, Integer> quantities) {
+        Map<Long, Integer> reserved = new HashMap<>();
+        List<ItemDto> missingItems = new ArrayList<>();
+        try {
+            hotQuantities.forEach((id, quantity) -> {
+                int missing = hotStockCoalescer.reserve(id, quantity);
+                if(missing > 0) {
+                    missingItems.add(ItemDto.builder()
+                            .productId(id)
+                            .quantity(missing)
+                            .build());
+                } else {
+                    reserved.put(id, quantity);
+                }
+            });
+        } catch(RuntimeException e) {
+            undo(reserved, quantities);
+            throw e;
+        }
+        if(!missingItems.isEmpty()) {
+            undo(reserved, quantities);
+            throw new MissingStockException("Unable to create order as long as there are missing stock", missingItems);
+        }
+        refundOnRollback(reserved);
+    }
+
+    private void undo(Map<Long, Integer> reserved, Map<Long, Integer> quantities) {
+        reserved.forEach(hotStockCoalescer::refund);
+        quantities.forEach((id, quantity) -> productRepository.addStock(id, quantity));
+    }
+
+    private void refundOnRollback(Map<Long, Integer> reserved) {
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if(status != STATUS_COMMITTED) {
+                    reserved.forEach(hotStockCoalescer::refund);
+                }
+            }
+        });
+    }
+
+    private List<ItemDto> getMissingItems(List<Long> failed, Map<Long, Integer> quantities) {
+        Map<Long, Integer> stocks = new HashMap<>();
+        productRepository.findStocks(failed).forEach(p -> stocks.put(p.getId(), p.getStock()));
+        List<ItemDto> missingItems = new ArrayList<>(failed.size());
+        for(Long id : failed) {
+            Integer stock = stocks.get(id);
+            if(stock == null) {
+                throw new ResponseStatusException(NOT_FOUND, "Product not found with id " + id);
+            }
+            missingItems.add(ItemDto.builder()
+                    .productId(id)
+                    .quantity(quantities.get(id) - stock)
+                    .build());
+        }
+        return missingItems;
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.esteban.products.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel of ids keyed by deadline. Each level has 64 slots, and every slot of
+ * a level spans a whole turn of the level below, whose entries are cascaded down as time advances.
+ */
+class TimingWheel {
+
+    private static final int SLOT_BITS = 6;
+
+    private static final int SLOTS = 1 << SLOT_BITS;
+
+    private static final int MASK = SLOTS - 1;
+
+    private final long tickMillis;
+
+    private final List<List<Entry>[]> levels = new ArrayList<>();
+
+    private final List<Entry> overflow = new ArrayList<>();
+
+    private List<Long> due = new ArrayList<>();
+
+    private long currentTick;
+
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, int levelCount, long now) {
+        this.tickMillis = tickMillis;
+        this.currentTick = now / tickMillis;
+        for(int i = 0; i < levelCount; i++) {
+            List<Entry>[] slots = new List[SLOTS];
+            for(int j = 0; j < SLOTS; j++) {
+                slots[j] = new ArrayList<>();
+            }
+            levels.add(slots);
+        }
+    }
+
+    synchronized void schedule(long id, long deadline) {
+        size++;
+        place(new Entry(id, deadline / tickMillis + 1));
+    }
+
+    synchronized List<Long> advance(long now) {
+        long targetTick = now / tickMillis;
+        while(currentTick < targetTick) {
+            currentTick++;
+            cascade(1);
+            List<Entry> slot = levels.get(0)[(int) (currentTick & MASK)];
+            slot.forEach(e -> due.add(e.id));
+            slot.clear();
+        }
+        List<Long> fired = due;
+        size -= fired.size();
+        due = new ArrayList<>();
+        return fired;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void cascade(int level) {
+        if((currentTick & mask(level)) != 0) {
+            return;
+        }
+        if(level == levels.size()) {
+            List<Entry> entries = new ArrayList<>(overflow);
+            overflow.clear();
+            entries.forEach(this::place);
+            return;
+        }
+        cascade(level + 1);
+        List<Entry> slot = levels.get(level)[(int) ((currentTick >>> (SLOT_BITS * level)) & MASK)];
+        List<Entry> entries = new ArrayList<>(slot);
+        slot.clear();
+        entries.forEach(this::place);
+    }
+
+    private void place(Entry entry) {
+        long delta = entry.tick - currentTick;
+        if(delta <= 0) {
+            due.add(entry.id);
+            return;
+        }
+        for(int level = 0; level < levels.size(); level++) {
+            if(delta < 1L << (SLOT_BITS * (level + 1))) {
+                levels.get(level)[(int) ((entry.tick >>> (SLOT_BITS * level)) & MASK)].add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+
+    private static long mask(int level) {
+        return (1L << (SLOT_BITS * level)) - 1;
+    }
+
+    private static class Entry {
+
+        private final long id;
+
+        private final long tick;
+
+        private Entry(long id, long tick) {
+            this.id = id;
+            this.tick = tick;
+        }
+
+    }
+
+}
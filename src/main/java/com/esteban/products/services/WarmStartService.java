@@ -0,0 +1,87 @@
+package com.esteban.products.services;
+
+import com.esteban.products.repositories.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the first {@code products.warm-start.limit} products into the product cache and the stock ledger once
+ * the application is ready, so a restart on a persistent store does not serve its first requests cold.
+ * The JVM uptime at that point and the warm-up time are logged and recorded as {@code products.startup.*} timers.
+ */
+@Service
+public class WarmStartService {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmStartService.class);
+
+    private final ProductRepository productRepository;
+
+    private final ProductService productService;
+
+    private final StockService stockService;
+
+    private final PriceCatalog priceCatalog;
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+
+    private final int pageSize;
+
+    private final int limit;
+
+    @Autowired
+    public WarmStartService(ProductRepository productRepository, ProductService productService, StockService stockService,
+                            PriceCatalog priceCatalog, MeterRegistry meterRegistry,
+                            @Value("${products.warm-start.enabled:false}") boolean enabled,
+                            @Value("${products.warm-start.page-size:1000}") int pageSize,
+                            @Value("${products.warm-start.limit:10000}") int limit) {
+        this.productRepository = productRepository;
+        this.productService = productService;
+        this.stockService = stockService;
+        this.priceCatalog = priceCatalog;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.pageSize = pageSize;
+        this.limit = limit;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        meterRegistry.timer("products.startup.ready").record(uptime, TimeUnit.MILLISECONDS);
+        if(!enabled) {
+            log.info("Application ready after {} ms", uptime);
+            return;
+        }
+        long start = System.nanoTime();
+        int loaded = 0;
+        long afterId = 0L;
+        while(loaded < limit) {
+            List<Long> ids = productRepository.findIdsAfter(afterId, PageRequest.of(0, Math.min(pageSize, limit - loaded)));
+            if(ids.isEmpty()) {
+                break;
+            }
+            productService.preload(ids);
+            stockService.preload(ids);
+            priceCatalog.preload(ids);
+            loaded += ids.size();
+            afterId = ids.get(ids.size() - 1);
+        }
+        long elapsed = System.nanoTime() - start;
+        meterRegistry.timer("products.startup.warm").record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Application ready after {} ms, warmed {} products in {} ms", uptime, loaded, elapsed / 1_000_000);
+    }
+
+}
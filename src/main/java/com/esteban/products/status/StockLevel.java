@@ -0,0 +1,5 @@
+package com.esteban.products.status;
+
+public enum StockLevel {
+    IN_STOCK, LOW_STOCK, OUT_OF_STOCK
+}
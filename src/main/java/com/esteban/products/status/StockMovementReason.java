@@ -0,0 +1,5 @@
+package com.esteban.products.status;
+
+public enum StockMovementReason {
+    RESERVATION, CANCELLATION, EXPIRY, ADJUSTMENT
+}
@@ -0,0 +1,5 @@
+package com.esteban.products.status;
+
+public enum TicketStatus {
+    QUEUED, CREATED, REJECTED, FAILED
+}
@@ -0,0 +1,13 @@
+create sequence if not exists item_seq start with 1 increment by 50;
+create sequence if not exists order_seq start with 1 increment by 50;
+create sequence if not exists product_seq start with 1 increment by 50;
+create sequence if not exists stock_movement_seq start with 1 increment by 50;
+create table if not exists p_idempotency_key (created timestamp(6), order_id bigint, idempotency_key varchar(255) not null, primary key (idempotency_key));
+create table if not exists p_item (quantity integer not null, id bigint not null, product_id bigint, primary key (id));
+create table if not exists p_order (status tinyint check (status between 0 and 2), created timestamp(6), id bigint not null, primary key (id));
+create table if not exists p_order_items (items_id bigint not null unique, p_order_id bigint not null);
+create table if not exists p_product (price float(53) not null, stock integer not null, id bigint not null, name varchar(255), primary key (id));
+create table if not exists p_stock_movement (delta integer not null, reason tinyint check (reason between 0 and 3), created timestamp(6), id bigint not null, product_id bigint, primary key (id));
+alter table p_item add constraint if not exists FKlb9c2ns38ad40c0pjioka4h5c foreign key (product_id) references p_product;
+alter table p_order_items add constraint if not exists FKhg09qp7hhebx8l63ucltsm486 foreign key (items_id) references p_item;
+alter table p_order_items add constraint if not exists FKg2nr14yxfvxjik53u41qq0ifi foreign key (p_order_id) references p_order;
@@ -0,0 +1,2 @@
+create table if not exists p_archived_order (status tinyint check (status between 0 and 2), archived timestamp(6), created timestamp(6), id bigint not null, primary key (id));
+create table if not exists p_archived_item (quantity integer not null, id bigint not null, order_id bigint, product_id bigint, primary key (id));
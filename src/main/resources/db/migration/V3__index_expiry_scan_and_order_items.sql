@@ -0,0 +1,4 @@
+create index if not exists idx_order_status_created on p_order (status, created);
+create index if not exists idx_item_product on p_item (product_id);
+create index if not exists idx_order_items_order on p_order_items (p_order_id);
+create index if not exists idx_archived_item_order on p_archived_item (order_id);
@@ -0,0 +1,2 @@
+create table if not exists p_expiry_lease (shard integer not null, expires timestamp(6), owner varchar(255), primary key (shard));
+create table if not exists p_expiry_node (expires timestamp(6), id varchar(255) not null, primary key (id));
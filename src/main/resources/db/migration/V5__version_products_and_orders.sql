@@ -0,0 +1,2 @@
+alter table p_product add column if not exists version bigint default 0 not null;
+alter table p_order add column if not exists version bigint default 0 not null;
@@ -0,0 +1,2 @@
+alter table p_item add column if not exists unit_price numeric(19,2);
+alter table p_archived_item add column if not exists unit_price numeric(19,2);
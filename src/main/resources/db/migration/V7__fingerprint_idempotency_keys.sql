@@ -0,0 +1 @@
+alter table p_idempotency_key add column if not exists fingerprint varchar(64);
@@ -0,0 +1,79 @@
+package com.esteban.products;
+
+import com.esteban.products.entities.Product;
+import com.esteban.products.model.ItemDto;
+import com.esteban.products.model.OrderDto;
+import com.esteban.products.repositories.ProductRepository;
+import com.esteban.products.services.OrderService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SchemaMigrationTest {
+
+    private static final int MIGRATIONS = 7;
+
+    @TempDir
+    private Path dataDir;
+
+    @Test
+    public void testMigratesEmptyDatabase() {
+        try(ConfigurableApplicationContext context = start()) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            assertEquals(MIGRATIONS, countMigrations(jdbcTemplate), "Every migration must be applied");
+            assertEquals(1, countIndexes(jdbcTemplate), "Expiry scan index must be created");
+        }
+    }
+
+    @Test
+    public void testMigratesDatabaseCreatedBeforeMigrations() {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:file:" + dataDir + "/products", "", "", true);
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.execute("runscript from 'classpath:db/migration/V1__create_catalog.sql'");
+            jdbcTemplate.execute("create index idx_order_status_created on p_order (status, created)");
+            jdbcTemplate.update("insert into p_product (id, name, stock, price) values (1, 'Milk', 10, 1.5)");
+        } finally {
+            dataSource.destroy();
+        }
+
+        try(ConfigurableApplicationContext context = start()) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            assertEquals(MIGRATIONS - 1, countMigrations(jdbcTemplate), "Existing database must be baselined and migrated");
+            assertEquals(1, countIndexes(jdbcTemplate), "Index already created by schema update must be kept");
+            Product product = context.getBean(ProductRepository.class).findById(1L).orElseThrow();
+            assertEquals(0, product.getVersion(), "Existing rows must get the initial version");
+            context.getBean(OrderService.class).create(OrderDto.builder()
+                    .items(Collections.singletonList(ItemDto.builder().productId(1L).quantity(4).build()))
+                    .build());
+        }
+    }
+
+    private int countMigrations(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject(
+                "select count(*) from \"flyway_schema_history\" where \"success\" and \"type\" = 'SQL'", Integer.class);
+    }
+
+    private int countIndexes(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.indexes where index_name = 'IDX_ORDER_STATUS_CREATED'", Integer.class);
+    }
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(ProductsApplication.class)
+                .profiles("file")
+                .web(WebApplicationType.NONE)
+                .run("--products.data-dir=" + dataDir);
+    }
+
+}
@@ -1,43 +1,77 @@
 package com.esteban.products.controllers;
 
+import com.esteban.products.error.MissingMessage;
+import com.esteban.products.error.MissingStockException;
+import com.esteban.products.model.BatchOrderResult;
 import com.esteban.products.model.ItemDto;
+import com.esteban.products.model.KeysetPage;
 import com.esteban.products.model.OrderDto;
+import com.esteban.products.model.OrderTicket;
+import com.esteban.products.services.IdempotencyService;
+import com.esteban.products.services.OrderIntakeService;
 import com.esteban.products.services.OrderService;
+import com.esteban.products.services.ProductImportService;
 import com.esteban.products.services.ProductService;
 import com.esteban.products.status.OrderStatus;
+import com.esteban.products.status.TicketStatus;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
-import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
-import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest
 public class OrderControllerTest {
 
-    @MockBean
+    @MockitoBean
     private OrderService orderService;
 
-    @MockBean
+    @MockitoBean
     private ProductService productService;
 
+    @MockitoBean
+    private ProductImportService productImportService;
+
+    @MockitoBean
+    private IdempotencyService idempotencyService;
+
+    @MockitoBean
+    private OrderIntakeService orderIntakeService;
+
     @Autowired
     private MockMvc mvc;
 
     @BeforeEach
     public void setUp() {
         Mockito.when(orderService.create(Mockito.any())).thenReturn(getOrder(OrderStatus.CREATED));
+        Mockito.when(idempotencyService.create(Mockito.anyString(), Mockito.any())).thenReturn(getOrder(OrderStatus.CREATED));
+        Mockito.when(orderIntakeService.submit(Mockito.any())).thenReturn(getTicket());
+        Mockito.when(orderIntakeService.getTicket(Mockito.anyString())).thenReturn(getTicket());
+        Mockito.when(orderService.createAll(Mockito.any())).thenReturn(Collections.singletonList(
+                BatchOrderResult.builder().order(getOrder(OrderStatus.CREATED)).build()));
+        Mockito.when(orderService.get(Mockito.anyLong())).thenReturn(getOrder(OrderStatus.CREATED));
+        Mockito.when(orderService.getPage(Mockito.any(), Mockito.anyInt(), Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(
+                KeysetPage.<OrderDto>builder().items(Collections.singletonList(getOrder(OrderStatus.CREATED))).build());
+        Mockito.doAnswer(invocation -> {
+            invocation.<Consumer<OrderDto>>getArgument(3).accept(getOrder(OrderStatus.CREATED));
+            return null;
+        }).when(orderService).export(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
         Mockito.when(orderService.updateStatus(Mockito.anyLong(), Mockito.any())).thenReturn(getOrder(OrderStatus.CANCELLED));
     }
 
@@ -49,6 +83,97 @@ public class OrderControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void testCreateWithIdempotencyKey() throws Exception {
+        mvc.perform(post("/orders").contentType(MediaType.APPLICATION_JSON)
+                        .header("Idempotency-Key", "4f1d2c3b")
+                        .content("{\"items\": [{\"productId\" : 1, \"quantity\": 4}]}"))
+                .andDo(print())
+                .andExpect(status().isOk());
+        Mockito.verify(idempotencyService).create(Mockito.eq("4f1d2c3b"), Mockito.any());
+    }
+
+    @Test
+    public void testCreateAsync() throws Exception {
+        Mockito.when(orderIntakeService.isEnabled()).thenReturn(true);
+        mvc.perform(post("/orders").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\": [{\"productId\" : 1, \"quantity\": 4}]}"))
+                .andDo(print())
+                .andExpect(status().isAccepted());
+    }
+
+    @Test
+    public void testGetTicket() throws Exception {
+        mvc.perform(get("/orders/tickets/4f1d2c3b"))
+                .andDo(print())
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testCreateAll() throws Exception {
+        mvc.perform(post("/orders/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"items\": [{\"productId\" : 1, \"quantity\": 4}]}]"))
+                .andDo(print())
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testGet() throws Exception {
+        mvc.perform(get("/orders/1"))
+                .andDo(print())
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testGetDefaultsToJson() throws Exception {
+        mvc.perform(get("/orders/1").accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void testGetCbor() throws Exception {
+        MvcResult result = mvc.perform(get("/orders/1").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        OrderDto order = new CBORMapper().readValue(result.getResponse().getContentAsByteArray(), OrderDto.class);
+        assertEquals(1L, order.getId());
+        assertEquals(getItems().size(), order.getItems().size());
+    }
+
+    @Test
+    public void testCreateMissingStockSmile() throws Exception {
+        Mockito.when(orderService.create(Mockito.any())).thenThrow(new MissingStockException("Missing stock", getItems()));
+        MvcResult result = mvc.perform(post("/orders").contentType(MediaType.APPLICATION_JSON)
+                        .accept(new MediaType("application", "x-jackson-smile"))
+                        .content("{\"items\": [{\"productId\" : 1, \"quantity\": 4}]}"))
+                .andExpect(status().isConflict())
+                .andReturn();
+
+        MissingMessage message = new SmileMapper().readValue(result.getResponse().getContentAsByteArray(), MissingMessage.class);
+        assertEquals(getItems().size(), message.getItems().size());
+    }
+
+    @Test
+    public void testGetPage() throws Exception {
+        mvc.perform(get("/orders?status=CREATED&from=2022-01-01T00:00:00.000Z&limit=10"))
+                .andDo(print())
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testExport() throws Exception {
+        MvcResult result = mvc.perform(get("/orders/export?status=CREATED"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"));
+    }
+
     @Test
     public void testUpdateStatus() throws Exception {
         mvc.perform(patch("/orders/1").contentType(MediaType.APPLICATION_JSON)
@@ -66,6 +191,13 @@ public class OrderControllerTest {
                 .build();
     }
 
+    private OrderTicket getTicket() {
+        return OrderTicket.builder()
+                .id("4f1d2c3b")
+                .status(TicketStatus.QUEUED)
+                .build();
+    }
+
     private List<ItemDto> getItems() {
         return Collections.singletonList(ItemDto.builder().productId(1L).quantity(10).build());
     }
@@ -1,30 +1,48 @@
 package com.esteban.products.controllers;
 
+import com.esteban.products.model.ImportReport;
+import com.esteban.products.model.KeysetPage;
 import com.esteban.products.model.ProductDto;
+import com.esteban.products.services.IdempotencyService;
+import com.esteban.products.services.OrderIntakeService;
 import com.esteban.products.services.OrderService;
+import com.esteban.products.services.ProductImportService;
 import com.esteban.products.services.ProductService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Collections;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest
 public class ProductControllerTest {
 
-    @MockBean
+    @MockitoBean
     private OrderService orderService;
 
-    @MockBean
+    @MockitoBean
     private ProductService productService;
 
+    @MockitoBean
+    private ProductImportService productImportService;
+
+    @MockitoBean
+    private IdempotencyService idempotencyService;
+
+    @MockitoBean
+    private OrderIntakeService orderIntakeService;
+
     @Autowired
     private MockMvc mvc;
 
@@ -32,6 +50,30 @@ public class ProductControllerTest {
     public void setUp() {
         Mockito.when(productService.create(Mockito.any())).thenReturn(getProduct());
         Mockito.when(productService.update(Mockito.anyLong(), Mockito.any())).thenReturn(getProduct());
+        Mockito.when(productService.get(Mockito.anyLong())).thenReturn(getProduct());
+        Mockito.when(productService.subscribeStockLevels()).thenReturn(new SseEmitter());
+        Mockito.when(productService.getPage(Mockito.any(), Mockito.anyInt())).thenReturn(
+                KeysetPage.<ProductDto>builder().items(Collections.singletonList(getProduct())).build());
+    }
+
+    @Test
+    public void testGet() throws Exception {
+        mvc.perform(get("/products/1"))
+                .andDo(print())
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testStreamStockEvents() throws Exception {
+        mvc.perform(get("/products/stock-events").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    public void testGetPage() throws Exception {
+        mvc.perform(get("/products?afterId=0&limit=10"))
+                .andDo(print())
+                .andExpect(status().isOk());
     }
 
     @Test
@@ -42,6 +84,15 @@ public class ProductControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void testImportCsv() throws Exception {
+        Mockito.when(productImportService.importCsv(Mockito.any())).thenReturn(ImportReport.builder().received(1).created(1).build());
+        mvc.perform(post("/products/bulk").contentType("text/csv")
+                        .content("name,stock,price\nMilk,10,1.5\n"))
+                .andDo(print())
+                .andExpect(status().isOk());
+    }
+
     @Test
     public void testDelete() throws Exception {
         mvc.perform(delete("/products/1"))
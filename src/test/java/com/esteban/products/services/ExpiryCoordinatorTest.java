@@ -0,0 +1,139 @@
+package com.esteban.products.services;
+
+import com.esteban.products.ProductsApplication;
+import com.esteban.products.entities.Product;
+import com.esteban.products.model.ItemDto;
+import com.esteban.products.model.OrderDto;
+import com.esteban.products.repositories.OrderRepository;
+import com.esteban.products.repositories.ProductRepository;
+import com.esteban.products.status.OrderStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExpiryCoordinatorTest {
+
+    private static final int SHARDS = 16;
+
+    private String url;
+
+    private ConfigurableApplicationContext node1;
+
+    private ConfigurableApplicationContext node2;
+
+    @BeforeEach
+    public void setUp() {
+        url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        node1 = start("node-1");
+        node2 = start("node-2");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        node2.close();
+        node1.close();
+    }
+
+    @Test
+    public void testShardsAreSplitBetweenNodes() {
+        ExpiryCoordinator coordinator1 = node1.getBean(ExpiryCoordinator.class);
+        ExpiryCoordinator coordinator2 = node2.getBean(ExpiryCoordinator.class);
+
+        coordinator1.renew();
+        coordinator2.renew();
+        coordinator1.renew();
+        coordinator2.renew();
+
+        Set<Integer> owned1 = coordinator1.getOwnedShards();
+        Set<Integer> owned2 = coordinator2.getOwnedShards();
+        assertEquals(SHARDS / 2, owned1.size(), "Each node must own its fair share");
+        assertEquals(SHARDS / 2, owned2.size(), "Each node must own its fair share");
+        Set<Integer> all = new HashSet<>(owned1);
+        all.addAll(owned2);
+        assertEquals(SHARDS, all.size(), "Every shard must be owned by exactly one node");
+
+        node2.close();
+        coordinator1.renew();
+        assertEquals(SHARDS, coordinator1.getOwnedShards().size(), "Shards of a stopped node must be taken over");
+        node2 = start("node-2");
+    }
+
+    @Test
+    public void testExpiryRestoresStockOnce() throws Exception {
+        ProductRepository productRepository = node1.getBean(ProductRepository.class);
+        Long productId = productRepository.save(Product.builder().name("Milk").price(1.5).stock(100).build()).getId();
+        OrderService orderService = node1.getBean(OrderService.class);
+        for(int i = 0; i < 40; i++) {
+            orderService.create(OrderDto.builder()
+                    .items(Collections.singletonList(ItemDto.builder().productId(productId).quantity(2).build()))
+                    .build());
+        }
+        node1.getBean(JdbcTemplate.class).update("update p_order set created = ?",
+                new Timestamp(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+        node1.getBean(ExpiryCoordinator.class).renew();
+        node2.getBean(ExpiryCoordinator.class).renew();
+        node1.getBean(ExpiryCoordinator.class).renew();
+        node2.getBean(ExpiryCoordinator.class).renew();
+
+        CompletableFuture<Void> expiry1 = CompletableFuture.runAsync(() -> node1.getBean(OrderService.class).expireOrders());
+        CompletableFuture<Void> expiry2 = CompletableFuture.runAsync(() -> node2.getBean(OrderService.class).expireOrders());
+        expiry1.get();
+        expiry2.get();
+
+        OrderRepository orderRepository = node1.getBean(OrderRepository.class);
+        assertEquals(0, orderRepository.countByStatusAndCreatedBefore(OrderStatus.CREATED, new Date()),
+                "Every expired order must be cancelled");
+        assertEquals(100, productRepository.findById(productId).get().getStock(), "Stock must be restored exactly once");
+        double expired1 = expired(node1);
+        double expired2 = expired(node2);
+        assertTrue(expired1 > 0 && expired2 > 0, "Both nodes must expire their own shards");
+        assertEquals(40, expired1 + expired2, "Each order must be expired by a single node");
+    }
+
+    @Test
+    public void testClusterModeRejectsStockLedger() {
+        assertThrows(Exception.class, () -> new SpringApplicationBuilder(ProductsApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + url,
+                        "--spring.jpa.hibernate.ddl-auto=update",
+                        "--products.stock.ledger.enabled=true",
+                        "--products.expiry.cluster.enabled=true"),
+                "Nodes with their own in-memory stock must not share expiry");
+    }
+
+    private double expired(ConfigurableApplicationContext node) {
+        return node.getBean(MeterRegistry.class).counter("orders.expired", "trigger", "polling").count();
+    }
+
+    private ConfigurableApplicationContext start(String nodeId) {
+        return new SpringApplicationBuilder(ProductsApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + url,
+                        "--spring.jpa.hibernate.ddl-auto=update",
+                        "--products.stock.ledger.enabled=false",
+                        "--products.expiry.cluster.enabled=true",
+                        "--products.expiry.shards=" + SHARDS,
+                        "--products.expiry.lease-renew=3600000",
+                        "--products.expiry.safety-net-delay=3600000",
+                        "--products.node-id=" + nodeId);
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.esteban.products.services;
+
+import com.esteban.products.entities.Order;
+import com.esteban.products.entities.Product;
+import com.esteban.products.model.ItemDto;
+import com.esteban.products.model.OrderDto;
+import com.esteban.products.repositories.ArchivedOrderRepository;
+import com.esteban.products.repositories.ItemRepository;
+import com.esteban.products.repositories.OrderRepository;
+import com.esteban.products.repositories.ProductRepository;
+import com.esteban.products.status.OrderStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.HttpStatus.CONFLICT;
+
+@SpringBootTest
+public class OrderArchiveServiceTest {
+
+    private Long prodId1;
+
+    private Long prodId2;
+
+    @Autowired
+    private OrderArchiveService orderArchiveService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private ArchivedOrderRepository archivedOrderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @BeforeEach
+    public void setUp() {
+        orderRepository.deleteAll();
+        itemRepository.deleteAll();
+        productRepository.deleteAll();
+        prodId1 = productRepository.save(Product.builder()
+                .stock(10)
+                .price(1.5)
+                .name("Milk")
+                .build()).getId();
+        prodId2 = productRepository.save(Product.builder()
+                .stock(5)
+                .price(0.75)
+                .name("Bread")
+                .build()).getId();
+    }
+
+    @Test
+    public void testArchiveMovesOldTerminalOrders() {
+        Long paidId = create();
+        Long createdId = create();
+        Long recentId = create();
+        orderService.updateStatus(paidId, OrderStatus.PAID);
+        orderService.updateStatus(recentId, OrderStatus.PAID);
+        age(paidId);
+        age(createdId);
+
+        int archived = orderArchiveService.archive(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+
+        assertEquals(1, archived, "Only the old PAID order must be archived");
+        assertFalse(orderRepository.existsById(paidId), "Archived order must leave the hot table");
+        assertTrue(orderRepository.existsById(createdId), "CREATED orders must not be archived");
+        assertTrue(orderRepository.existsById(recentId), "Recent orders must not be archived");
+        assertEquals(4, itemRepository.count(), "Items of the archived order must leave the hot table");
+        assertTrue(archivedOrderRepository.existsById(paidId), "Order must be stored in the archive");
+
+        OrderDto order = orderService.get(paidId);
+        assertEquals(OrderStatus.PAID, order.getStatus(), "Archived order must keep its status");
+        assertEquals(2, order.getItems().size(), "Archived order must keep its items");
+        assertEquals(3, order.getItems().get(0).getQuantity());
+        ResponseStatusException ex = Assertions.assertThrows(ResponseStatusException.class,
+                () -> orderService.updateStatus(paidId, OrderStatus.CANCELLED));
+        assertEquals(CONFLICT, ex.getStatusCode(), "Archived orders must not change status");
+    }
+
+    private Long create() {
+        return orderService.create(OrderDto.builder()
+                .items(Arrays.asList(
+                        ItemDto.builder()
+                                .quantity(3)
+                                .productId(prodId1)
+                                .build(),
+                        ItemDto.builder()
+                                .quantity(1)
+                                .productId(prodId2)
+                                .build()))
+                .build()).getId();
+    }
+
+    private void age(Long orderId) {
+        Order order = orderRepository.findById(orderId).get();
+        order.setCreated(new Date(System.currentTimeMillis() - 2 * 60 * 60 * 1000));
+        orderRepository.save(order);
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.esteban.products.services;
+
+import com.esteban.products.entities.Order;
+import com.esteban.products.entities.Product;
+import com.esteban.products.model.ItemDto;
+import com.esteban.products.model.OrderDto;
+import com.esteban.products.repositories.ItemRepository;
+import com.esteban.products.repositories.OrderRepository;
+import com.esteban.products.repositories.ProductRepository;
+import com.esteban.products.status.OrderStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mockingDetails;
+
+@SpringBootTest(properties = {
+        "products.stock.flush-delay=3600000",
+        "products.stock.journal.flush-delay=3600000"
+})
+public class OrderExpiryServiceTest {
+
+    @MockitoSpyBean
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderExpiryService orderExpiryService;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long productId;
+
+    @BeforeEach
+    public void setUp() {
+        orderRepository.deleteAll();
+        itemRepository.deleteAll();
+        productRepository.deleteAll();
+        productId = productRepository.save(Product.builder().name("Milk").price(1.5).stock(10).build()).getId();
+    }
+
+    @Test
+    public void testExpireSkipsOrdersPaidMeanwhile() {
+        List<Long> ids = new ArrayList<>();
+        for(int i = 0; i < 3; i++) {
+            ids.add(orderService.create(OrderDto.builder()
+                    .items(Collections.singletonList(ItemDto.builder().productId(productId).quantity(2).build()))
+                    .build()).getId());
+        }
+        jdbcTemplate.update("update p_order set created = ?", new Timestamp(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+        Answer<?> repository = mockingDetails(orderRepository).getMockCreationSettings().getDefaultAnswer();
+        AtomicBoolean paid = new AtomicBoolean();
+        doAnswer(invocation -> {
+            if(paid.compareAndSet(false, true)) {
+                CompletableFuture.runAsync(() -> jdbcTemplate.update("update p_order set status = ? where id = ?",
+                        OrderStatus.PAID.ordinal(), ids.get(0))).join();
+            }
+            return repository.answer(invocation);
+        }).when(orderRepository).updateStatus(anyCollection(), any(OrderStatus.class), any(OrderStatus.class));
+
+        int expired = orderExpiryService.expire(orderExpiryService.getExpiration());
+
+        assertEquals(2, expired, "Orders of the conflicting page must be expired without the paid one");
+        assertEquals(OrderStatus.PAID, status(ids.get(0)));
+        assertEquals(OrderStatus.CANCELLED, status(ids.get(1)));
+        assertEquals(OrderStatus.CANCELLED, status(ids.get(2)));
+        assertEquals(8, stockLedger.getAvailable(productId), "Only the expired orders must release stock");
+    }
+
+    private OrderStatus status(Long id) {
+        return orderRepository.findById(id).map(Order::getStatus).orElseThrow();
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.esteban.products.services;
+
+import com.esteban.products.entities.Product;
+import com.esteban.products.model.ItemDto;
+import com.esteban.products.model.OrderDto;
+import com.esteban.products.model.OrderTicket;
+import com.esteban.products.repositories.ItemRepository;
+import com.esteban.products.repositories.OrderRepository;
+import com.esteban.products.repositories.ProductRepository;
+import com.esteban.products.status.TicketStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {"products.orders.intake.async=true", "products.orders.intake.workers=1"})
+public class OrderIntakeServiceTest {
+
+    private Long productId;
+
+    @Autowired
+    private OrderIntakeService orderIntakeService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @BeforeEach
+    public void setUp() {
+        orderRepository.deleteAll();
+        itemRepository.deleteAll();
+        productRepository.deleteAll();
+        productId = productRepository.save(Product.builder()
+                .stock(5)
+                .price(1.5)
+                .name("Milk")
+                .build()).getId();
+    }
+
+    @Test
+    public void testSubmit() throws Exception {
+        OrderTicket accepted = orderIntakeService.submit(createOrder(3));
+        OrderTicket rejected = orderIntakeService.submit(createOrder(3));
+
+        assertEquals(TicketStatus.QUEUED, accepted.getStatus(), "Submitted order must be queued");
+        OrderTicket created = await(accepted.getId());
+        assertEquals(TicketStatus.CREATED, created.getStatus(), "First order must be created");
+        assertNotNull(created.getOrder().getId(), "Created order must be returned");
+        OrderTicket missing = await(rejected.getId());
+        assertEquals(TicketStatus.REJECTED, missing.getStatus(), "Second order must be rejected for missing stock");
+        assertEquals(1, missing.getError().getItems().get(0).getQuantity(), "1 quantity must be returned as missing");
+    }
+
+    @Test
+    @DirtiesContext
+    public void testStopDrainsQueue() {
+        List<String> ticketIds = new ArrayList<>();
+        for(int i = 0; i < 50; i++) {
+            ticketIds.add(orderIntakeService.submit(createOrder(0)).getId());
+        }
+
+        orderIntakeService.stop();
+
+        for(String ticketId : ticketIds) {
+            assertEquals(TicketStatus.CREATED, orderIntakeService.getTicket(ticketId).getStatus(),
+                    "Accepted orders must be processed before stopping");
+        }
+        assertThrows(ResponseStatusException.class, () -> orderIntakeService.submit(createOrder(1)),
+                "Orders must not be accepted once stopped");
+    }
+
+    private OrderTicket await(String ticketId) throws InterruptedException {
+        for(int i = 0; i < 100; i++) {
+            OrderTicket ticket = orderIntakeService.getTicket(ticketId);
+            if(ticket.getStatus() != TicketStatus.QUEUED) {
+                return ticket;
+            }
+            Thread.sleep(50);
+        }
+        return orderIntakeService.getTicket(ticketId);
+    }
+
+    private OrderDto createOrder(int quantity) {
+        return OrderDto.builder()
+                .items(Collections.singletonList(ItemDto.builder()
+                        .quantity(quantity)
+                        .productId(productId)
+                        .build()))
+                .build();
+    }
+
+}
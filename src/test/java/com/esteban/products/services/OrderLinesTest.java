@@ -0,0 +1,60 @@
+package com.esteban.products.services;
+
+import com.esteban.products.model.ItemDto;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+public class OrderLinesTest {
+
+    @Test
+    public void testMergesDuplicateProductsInIdOrder() {
+        OrderLines lines = OrderLines.of(Arrays.asList(item(7L, 2), item(3L, 1), item(7L, 5), item(5L, 4)));
+
+        assertEquals(3, lines.size(), "Lines of the same product must be merged");
+        assertEquals(Arrays.asList(3L, 5L, 7L), lines.productIds(), "Products must be sorted by id");
+        assertEquals(1, lines.quantity(0));
+        assertEquals(4, lines.quantity(1));
+        assertEquals(7, lines.quantity(2), "Quantities of merged lines must be summed");
+    }
+
+    @Test
+    public void testMissingItemsOnlyForShortLines() {
+        OrderLines lines = OrderLines.of(Arrays.asList(item(2L, 3), item(1L, 4)));
+
+        List<ItemDto> missing = lines.toMissingItems(new int[]{0, 2});
+
+        assertEquals(1, missing.size());
+        assertEquals(2L, missing.get(0).getProductId());
+        assertEquals(2, missing.get(0).getQuantity());
+    }
+
+    @Test
+    public void testRejectsInvalidLines() {
+        ResponseStatusException negative = Assertions.assertThrows(ResponseStatusException.class,
+                () -> OrderLines.of(Collections.singletonList(item(1L, -1))));
+        ResponseStatusException noProduct = Assertions.assertThrows(ResponseStatusException.class,
+                () -> OrderLines.of(Collections.singletonList(item(null, 1))));
+        ResponseStatusException overflow = Assertions.assertThrows(ResponseStatusException.class,
+                () -> OrderLines.of(Arrays.asList(item(1L, Integer.MAX_VALUE), item(1L, 1))));
+
+        assertEquals(BAD_REQUEST, negative.getStatusCode());
+        assertEquals(BAD_REQUEST, noProduct.getStatusCode());
+        assertEquals(BAD_REQUEST, overflow.getStatusCode());
+    }
+
+    private ItemDto item(Long productId, int quantity) {
+        return ItemDto.builder()
+                .productId(productId)
+                .quantity(quantity)
+                .build();
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.esteban.products.services;
+
+import com.esteban.products.model.ItemDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class OrderMetricsTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    public void testTagsListedAndFirstProducts() {
+        OrderMetrics orderMetrics = new OrderMetrics(registry, Collections.singleton(42L), 1);
+
+        orderMetrics.rejected(Arrays.asList(item(1L), item(2L), item(42L), item(1L), item(3L)));
+
+        assertEquals(2, registry.counter("orders.stock.rejections", "product", "1").count(),
+                "First product seen must keep its own series");
+        assertEquals(1, registry.counter("orders.stock.rejections", "product", "42").count(),
+                "Listed product must keep its own series beyond the limit");
+        assertEquals(2, registry.counter("orders.stock.rejections", "product", "other").count(),
+                "Products beyond the limit must be counted together");
+        assertNull(registry.find("orders.stock.rejections").tag("product", "2").counter());
+    }
+
+    @Test
+    public void testConflictsShareTheTags() {
+        OrderMetrics orderMetrics = new OrderMetrics(registry, Collections.emptySet(), 1);
+
+        orderMetrics.stockConflict(7L);
+        orderMetrics.stockConflict(8L);
+        orderMetrics.stockConflict("7");
+
+        assertEquals(1, registry.counter("products.stock.conflicts", "product", "7").count());
+        assertEquals(2, registry.counter("products.stock.conflicts", "product", "other").count());
+    }
+
+    private ItemDto item(Long productId) {
+        return ItemDto.builder().productId(productId).quantity(1).build();
+    }
+
+}
@@ -0,0 +1,7 @@
+package com.esteban.products.services;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = "products.stock.ledger.enabled=false")
+public class OrderServiceDatabaseStockTest extends OrderServiceTest {
+}
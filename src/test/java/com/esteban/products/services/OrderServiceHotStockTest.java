@@ -0,0 +1,33 @@
+package com.esteban.products.services;
+
+import com.esteban.products.entities.Product;
+import com.esteban.products.repositories.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = "products.stock.ledger.enabled=false")
+public class OrderServiceHotStockTest extends OrderServiceTest {
+
+    @Autowired
+    private HotStockCoalescer hotStockCoalescer;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @BeforeEach
+    public void flagHotProducts() {
+        productRepository.findAll().stream()
+                .map(Product::getId)
+                .forEach(hotStockCoalescer::flag);
+    }
+
+    @AfterEach
+    public void unflagHotProducts() {
+        productRepository.findAll().stream()
+                .map(Product::getId)
+                .forEach(hotStockCoalescer::unflag);
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.esteban.products.services;
+
+import com.esteban.products.entities.Product;
+import com.esteban.products.model.ItemDto;
+import com.esteban.products.model.OrderDto;
+import com.esteban.products.repositories.ItemRepository;
+import com.esteban.products.repositories.OrderRepository;
+import com.esteban.products.repositories.ProductRepository;
+import com.esteban.products.status.OrderStatus;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import jakarta.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "products.stock.flush-delay=3600000",
+        "products.stock.journal.flush-delay=3600000"
+})
+public class OrderServiceStatementsTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private PriceCatalog priceCatalog;
+
+    private Statistics statistics;
+
+    private Long orderId;
+
+    private Long prodId1;
+
+    @BeforeEach
+    public void setUp() {
+        orderRepository.deleteAll();
+        itemRepository.deleteAll();
+        productRepository.deleteAll();
+        prodId1 = productRepository.save(Product.builder().stock(10).price(1.5).name("Milk").build()).getId();
+        Long prodId2 = productRepository.save(Product.builder().stock(10).price(0.75).name("Bread").build()).getId();
+        OrderDto orderDto = OrderDto.builder()
+                .items(Arrays.asList(
+                        ItemDto.builder().quantity(1).productId(prodId1).build(),
+                        ItemDto.builder().quantity(1).productId(prodId2).build()))
+                .build();
+        orderId = orderService.create(orderDto).getId();
+        orderService.create(orderDto);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void testCreate() {
+        List<Long> productIds = new ArrayList<>();
+        for(int i = 0; i < 20; i++) {
+            productIds.add(productRepository.save(Product.builder().stock(10).price(1).name("Product " + i).build()).getId());
+        }
+        stockService.preload(productIds);
+        priceCatalog.preload(productIds);
+        List<ItemDto> items = new ArrayList<>();
+        for(Long productId : productIds) {
+            items.add(ItemDto.builder().quantity(1).productId(productId).build());
+        }
+        statistics.clear();
+
+        OrderDto order = orderService.create(OrderDto.builder().items(items).build());
+
+        assertEquals(20, order.getItems().size(), "Every product must get its own item");
+        assertEquals(3, statistics.getPrepareStatementCount(),
+                "Items, order and join rows must each be inserted in one batch without sequence round trips");
+    }
+
+    @Test
+    public void testCreateMergesLines() {
+        List<ItemDto> items = new ArrayList<>();
+        for(int i = 0; i < 4; i++) {
+            items.add(ItemDto.builder().quantity(2).productId(prodId1).build());
+        }
+
+        OrderDto order = orderService.create(OrderDto.builder().items(items).build());
+
+        assertEquals(1, order.getItems().size(), "Lines of the same product must be stored as one item");
+        assertEquals(8, order.getItems().get(0).getQuantity(), "Merged item must hold the summed quantity");
+        assertEquals(3, statistics.getPrepareStatementCount(), "A merged order must be stored like any other");
+    }
+
+    @Test
+    public void testGet() {
+        OrderDto order = orderService.get(orderId);
+
+        assertEquals(2, order.getItems().size(), "Order must be returned with its items");
+        assertEquals(new BigDecimal("2.25"), order.getTotal(), "Total must be priced from the item snapshots");
+        assertEquals(1, statistics.getPrepareStatementCount(), "Order with items must be read in one statement");
+        assertEquals(0, statistics.getEntityLoadCount(), "No entity must be hydrated");
+    }
+
+    @Test
+    public void testGetPage() {
+        orderService.getPage(null, 10, null, null, null);
+
+        assertEquals(2, statistics.getPrepareStatementCount(), "A page must be read with one id and one row statement");
+        assertEquals(0, statistics.getEntityLoadCount(), "No entity must be hydrated");
+    }
+
+    @Test
+    public void testUpdateStatus() {
+        orderService.updateStatus(orderId, OrderStatus.CANCELLED);
+
+        assertEquals(2, statistics.getPrepareStatementCount(), "Status change must load the order once and update it");
+        assertEquals(0, statistics.getEntityFetchCount(), "No product must be fetched");
+    }
+
+    @Test
+    public void testExpiryScanUsesStatusCreatedIndex() {
+        String plan = jdbcTemplate.queryForObject(
+                "explain select id from p_order where status = 0 and created < current_timestamp order by id", String.class);
+
+        assertTrue(plan.toUpperCase().contains("IDX_ORDER_STATUS_CREATED"), "Expiry scan must use the (status, created) index: " + plan);
+    }
+
+}
@@ -2,23 +2,44 @@ package com.esteban.products.services;
 
 import com.esteban.products.entities.Order;
 import com.esteban.products.entities.Product;
+import com.esteban.products.entities.StockMovement;
 import com.esteban.products.error.MissingStockException;
+import com.esteban.products.model.BatchOrderResult;
 import com.esteban.products.model.ItemDto;
+import com.esteban.products.model.KeysetPage;
 import com.esteban.products.model.OrderDto;
+import com.esteban.products.model.ProductDto;
 import com.esteban.products.repositories.ItemRepository;
 import com.esteban.products.repositories.OrderRepository;
 import com.esteban.products.repositories.ProductRepository;
+import com.esteban.products.repositories.StockMovementRepository;
 import com.esteban.products.status.OrderStatus;
+import com.esteban.products.status.StockMovementReason;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
@@ -40,6 +61,24 @@ public class OrderServiceTest {
     @Autowired
     private ItemRepository itemRepository;
 
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private StockJournal stockJournal;
+
+    @Autowired
+    private StockMovementRepository stockMovementRepository;
+
     @BeforeEach
     public void setUp() {
         createProducts();
@@ -61,10 +100,12 @@ public class OrderServiceTest {
 
         Long orderId = orderService.create(orderDto).getId();
 
-        Optional<Order> order = orderRepository.findById(orderId);
+        Optional<Order> order = orderRepository.findWithItemsById(orderId);
         assertTrue(order.isPresent(), "Order created must exist");
         assertEquals(2, order.get().getItems().size(), "2 items should be added to the order");
         assertEquals(OrderStatus.CREATED, order.get().getStatus(), "order created should have CREATED status");
+        assertEquals(3, productService.get(prodId1).getStock(), "3 quantity should be available");
+        stockLedger.flush();
         Optional<Product> product = productRepository.findById(prodId1);
         assertEquals(3, product.get().getStock(), "3 quantity should remain");
 
@@ -85,11 +126,145 @@ public class OrderServiceTest {
                                 .build()))
                 .build();
 
+        double rejections = rejections();
+
         MissingStockException exception = Assertions.assertThrows(MissingStockException.class, () -> {
             orderService.create(orderDto).getId();
         });
         assertEquals(1, exception.getItems().size(), "1 Items must be returned as missing");
         assertEquals(2, exception.getItems().get(0).getQuantity(), "2 quantity must be returned as missing");
+        assertEquals(rejections + 1, rejections(), "Rejection must be counted once");
+    }
+
+    @Test
+    public void testCreateMergesDuplicateLines() {
+        OrderDto order = orderService.create(OrderDto.builder()
+                .items(Arrays.asList(
+                        ItemDto.builder()
+                                .quantity(3)
+                                .productId(prodId1)
+                                .build(),
+                        ItemDto.builder()
+                                .quantity(4)
+                                .productId(prodId1)
+                                .build()))
+                .build());
+
+        assertEquals(1, order.getItems().size(), "Lines of the same product must be merged");
+        assertEquals(7, order.getItems().get(0).getQuantity(), "Merged line must hold the summed quantity");
+        assertEquals(3, productService.get(prodId1).getStock(), "3 quantity should be available");
+
+        MissingStockException exception = Assertions.assertThrows(MissingStockException.class, () ->
+                orderService.create(OrderDto.builder()
+                        .items(Arrays.asList(
+                                ItemDto.builder()
+                                        .quantity(2)
+                                        .productId(prodId1)
+                                        .build(),
+                                ItemDto.builder()
+                                        .quantity(2)
+                                        .productId(prodId1)
+                                        .build()))
+                        .build()));
+        assertEquals(1, exception.getItems().get(0).getQuantity(), "Shortfall must be computed on the merged line");
+        assertEquals(3, productService.get(prodId1).getStock(), "Rejected order must not reserve stock");
+    }
+
+    @Test
+    public void testCreatePricesOrderFromSnapshot() {
+        OrderDto orderDto = OrderDto.builder()
+                .items(Arrays.asList(
+                        ItemDto.builder()
+                                .quantity(1)
+                                .productId(prodId1)
+                                .build(),
+                        ItemDto.builder()
+                                .quantity(2)
+                                .productId(prodId2)
+                                .build()))
+                .build();
+
+        OrderDto created = orderService.create(orderDto);
+
+        assertEquals(new BigDecimal("1.50"), created.getItems().get(0).getUnitPrice(), "Unit price must be snapshotted");
+        assertEquals(new BigDecimal("1.50"), created.getItems().get(1).getTotal(), "Line total must be exact");
+        assertEquals(new BigDecimal("3.00"), created.getTotal(), "Order total must be the sum of the lines");
+
+        productService.update(prodId1, ProductDto.builder().name("Milk").price(2.1).stock(10).build());
+        OrderDto repriced = orderService.create(OrderDto.builder()
+                .items(Collections.singletonList(ItemDto.builder().quantity(3).productId(prodId1).build()))
+                .build());
+
+        assertEquals(new BigDecimal("6.30"), repriced.getTotal(), "New orders must use the updated price");
+        assertEquals(new BigDecimal("3.00"), orderService.get(created.getId()).getTotal(),
+                "Existing orders must keep the price they were created with");
+    }
+
+    @Test
+    public void testCreateAll() {
+        List<BatchOrderResult> results = orderService.createAll(Arrays.asList(
+                OrderDto.builder()
+                        .items(Collections.singletonList(ItemDto.builder()
+                                .quantity(7)
+                                .productId(prodId1)
+                                .build()))
+                        .build(),
+                OrderDto.builder()
+                        .items(Collections.singletonList(ItemDto.builder()
+                                .quantity(7)
+                                .productId(prodId1)
+                                .build()))
+                        .build(),
+                OrderDto.builder()
+                        .items(Collections.singletonList(ItemDto.builder()
+                                .quantity(3)
+                                .productId(prodId1)
+                                .build()))
+                        .build()));
+
+        assertEquals(3, results.size(), "A result must be returned per order");
+        assertNotNull(results.get(0).getOrder(), "First order must be created");
+        assertNotNull(results.get(1).getError(), "Second order must fail for missing stock");
+        assertEquals(4, results.get(1).getError().getItems().get(0).getQuantity(), "4 quantity must be returned as missing");
+        assertNotNull(results.get(2).getOrder(), "Third order must be created");
+        assertEquals(2, orderRepository.count(), "Only 2 orders must be stored");
+        stockLedger.flush();
+        assertEquals(0, productRepository.findById(prodId1).get().getStock(), "No stock should remain");
+    }
+
+    @Test
+    public void testCreateIdempotent() {
+        OrderDto orderDto = OrderDto.builder()
+                .items(Collections.singletonList(ItemDto.builder()
+                        .quantity(4)
+                        .productId(prodId1)
+                        .build()))
+                .build();
+        String key = UUID.randomUUID().toString();
+
+        Long orderId = idempotencyService.create(key, orderDto).getId();
+        Long retriedId = idempotencyService.create(key, orderDto).getId();
+
+        assertEquals(orderId, retriedId, "Retry must return the original order");
+        assertEquals(1, orderRepository.count(), "Only one order must be stored");
+        assertEquals(6, productService.get(prodId1).getStock(), "Stock must be reserved only once");
+    }
+
+    @Test
+    public void testCreateIdempotentRejectsDifferentOrder() {
+        String key = UUID.randomUUID().toString();
+        idempotencyService.create(key, OrderDto.builder()
+                .items(Collections.singletonList(ItemDto.builder().quantity(4).productId(prodId1).build()))
+                .build());
+
+        ResponseStatusException exception = Assertions.assertThrows(ResponseStatusException.class, () ->
+                idempotencyService.create(key, OrderDto.builder()
+                        .items(Collections.singletonList(ItemDto.builder().quantity(5).productId(prodId1).build()))
+                        .build()));
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, exception.getStatusCode(), "Reused key with other items must be rejected");
+        assertEquals(1, orderRepository.count(), "No order must be created for the reused key");
+        assertEquals(6, productService.get(prodId1).getStock(), "Stock must be reserved only once");
     }
 
     @Test
@@ -112,8 +287,153 @@ public class OrderServiceTest {
         Optional<Order> order = orderRepository.findById(orderId);
         assertTrue(order.isPresent(), "Order created must exist");
         assertEquals(OrderStatus.CANCELLED, order.get().getStatus(), "order cancelled should have CANCELLED status");
+        stockLedger.flush();
         Optional<Product> product = productRepository.findById(prodId1);
         assertEquals(10, product.get().getStock(), "10 quantity should remain as order is cancelled");
+        stockJournal.flush();
+        List<StockMovement> movements = stockMovementRepository.findByProductIdOrderById(prodId1);
+        assertEquals(2, movements.size(), "Reservation and cancellation must be journaled");
+        assertEquals(StockMovementReason.RESERVATION, movements.get(0).getReason());
+        assertEquals(-7, movements.get(0).getDelta());
+        assertEquals(StockMovementReason.CANCELLATION, movements.get(1).getReason());
+        assertEquals(7, movements.get(1).getDelta());
+    }
+
+    @Test
+    public void testConcurrentCancelReleasesStockOnce() throws Exception {
+        Long orderId = orderService.create(OrderDto.builder()
+                .items(Collections.singletonList(ItemDto.builder()
+                        .quantity(4)
+                        .productId(prodId1)
+                        .build()))
+                .build()).getId();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for(int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                try {
+                    orderService.updateStatus(orderId, OrderStatus.CANCELLED);
+                    return true;
+                } catch(ResponseStatusException ex) {
+                    return false;
+                }
+            }));
+        }
+        int cancelled = 0;
+        for(Future<Boolean> result : results) {
+            if(result.get()) {
+                cancelled++;
+            }
+        }
+        executor.shutdown();
+
+        stockLedger.flush();
+        assertEquals(1, cancelled, "Only one cancellation must succeed");
+        assertEquals(10, productRepository.findById(prodId1).get().getStock(), "Stock must be released once");
+    }
+
+    @Test
+    public void testExpireOrders() {
+        OrderDto orderDto = OrderDto.builder()
+                .items(Arrays.asList(
+                        ItemDto.builder()
+                                .quantity(3)
+                                .productId(prodId1)
+                                .build(),
+                        ItemDto.builder()
+                                .quantity(2)
+                                .productId(prodId1)
+                                .build()))
+                .build();
+        Long expiredId = orderService.create(orderDto).getId();
+        Long recentId = orderService.create(orderDto).getId();
+        Order expired = orderRepository.findById(expiredId).get();
+        expired.setCreated(new Date(System.currentTimeMillis() - 31 * 60 * 1000));
+        orderRepository.save(expired);
+
+        orderService.expireOrders();
+
+        assertEquals(OrderStatus.CANCELLED, orderRepository.findById(expiredId).get().getStatus(), "Expired order should be CANCELLED");
+        assertEquals(OrderStatus.CREATED, orderRepository.findById(recentId).get().getStatus(), "Recent order should remain CREATED");
+        stockLedger.flush();
+        assertEquals(5, productRepository.findById(prodId1).get().getStock(), "Stock of the expired order should be restored");
+    }
+
+    @Test
+    public void testGetPage() {
+        List<Long> ids = new ArrayList<>();
+        for(int i = 0; i < 3; i++) {
+            ids.add(orderService.create(OrderDto.builder()
+                    .items(Collections.singletonList(ItemDto.builder()
+                            .quantity(1)
+                            .productId(prodId1)
+                            .build()))
+                    .build()).getId());
+        }
+        orderService.updateStatus(ids.get(1), OrderStatus.PAID);
+
+        KeysetPage<OrderDto> first = orderService.getPage(null, 1, OrderStatus.CREATED, null, null);
+        KeysetPage<OrderDto> second = orderService.getPage(first.getNextAfterId(), 1, OrderStatus.CREATED, null, null);
+        KeysetPage<OrderDto> last = orderService.getPage(second.getNextAfterId(), 1, OrderStatus.CREATED, null, null);
+
+        assertEquals(ids.get(0), first.getItems().get(0).getId(), "First page must start with the first CREATED order");
+        assertEquals(ids.get(2), second.getItems().get(0).getId(), "PAID order must be skipped");
+        assertTrue(last.getItems().isEmpty(), "No more CREATED orders must remain");
+        assertNull(last.getNextAfterId(), "Last page must not have a next cursor");
+    }
+
+    @Test
+    public void testExport() {
+        for(int i = 0; i < 3; i++) {
+            orderService.create(OrderDto.builder()
+                    .items(Collections.singletonList(ItemDto.builder()
+                            .quantity(1)
+                            .productId(prodId2)
+                            .build()))
+                    .build());
+        }
+
+        List<OrderDto> exported = new ArrayList<>();
+        orderService.export(OrderStatus.CREATED, new Date(0), null, exported::add);
+
+        assertEquals(3, exported.size(), "All orders must be exported");
+        assertEquals(1, exported.get(0).getItems().size(), "Items of exported orders must be included");
+    }
+
+    @Test
+    public void testCreateConcurrentlyDoesNotOversell() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for(int i = 0; i < 20; i++) {
+            results.add(executor.submit(() -> {
+                try {
+                    orderService.create(OrderDto.builder()
+                            .items(Collections.singletonList(ItemDto.builder()
+                                    .quantity(1)
+                                    .productId(prodId1)
+                                    .build()))
+                            .build());
+                    return true;
+                } catch(MissingStockException ex) {
+                    return false;
+                }
+            }));
+        }
+        int created = 0;
+        for(Future<Boolean> result : results) {
+            if(result.get()) {
+                created++;
+            }
+        }
+        executor.shutdown();
+
+        stockLedger.flush();
+        assertEquals(10, created, "Only as many orders as stock available must be created");
+        assertEquals(0, productRepository.findById(prodId1).get().getStock(), "No stock should remain");
+    }
+
+    private double rejections() {
+        return meterRegistry.find("orders.stock.rejections").counters().stream().mapToDouble(Counter::count).sum();
     }
 
     private void createProducts() {
@@ -0,0 +1,89 @@
+package com.esteban.products.services;
+
+import com.esteban.products.model.ItemDto;
+import com.esteban.products.repositories.ProductPrice;
+import com.esteban.products.repositories.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PriceCatalogTest {
+
+    private static final long PRODUCT_ID = 1L;
+
+    private ProductRepository productRepository;
+
+    private PriceCatalog priceCatalog;
+
+    @BeforeEach
+    public void setUp() {
+        productRepository = mock(ProductRepository.class);
+        priceCatalog = new PriceCatalog(productRepository, 100, 60000);
+    }
+
+    @Test
+    public void testLoadRacingInvalidationIsNotCached() {
+        when(productRepository.findPrices(anyCollection()))
+                .thenAnswer(invocation -> {
+                    priceCatalog.invalidate(Collections.singleton(PRODUCT_ID));
+                    return Collections.singletonList(price(1, 1.5));
+                })
+                .thenReturn(Collections.singletonList(price(2, 2.0)));
+
+        assertEquals(new BigDecimal("1.50"), get(), "The caller must get the price it read");
+        assertEquals(new BigDecimal("2.00"), get(), "A price read before an invalidation must not be cached");
+        assertEquals(new BigDecimal("2.00"), get());
+        verify(productRepository, times(2)).findPrices(anyCollection());
+    }
+
+    @Test
+    public void testInvalidationKeepsVersion() {
+        priceCatalog.update(PRODUCT_ID, 2, 2.0);
+        priceCatalog.invalidate(Collections.singleton(PRODUCT_ID));
+        priceCatalog.update(PRODUCT_ID, 1, 1.5);
+        when(productRepository.findPrices(anyCollection())).thenReturn(Collections.singletonList(price(3, 2.5)));
+
+        assertEquals(new BigDecimal("2.50"), get(), "An older price must not replace an invalidated entry");
+    }
+
+    @Test
+    public void testRoundsHalfUp() {
+        priceCatalog.update(PRODUCT_ID, 1, 0.125);
+
+        assertEquals(new BigDecimal("0.13"), get());
+    }
+
+    private BigDecimal get() {
+        return priceCatalog.get(OrderLines.of(Collections.singletonList(
+                ItemDto.builder().productId(PRODUCT_ID).quantity(1).build())))[0];
+    }
+
+    private ProductPrice price(long version, double price) {
+        return new ProductPrice() {
+            @Override
+            public Long getId() {
+                return PRODUCT_ID;
+            }
+
+            @Override
+            public double getPrice() {
+                return price;
+            }
+
+            @Override
+            public long getVersion() {
+                return version;
+            }
+        };
+    }
+
+}
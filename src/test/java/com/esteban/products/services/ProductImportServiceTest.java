@@ -0,0 +1,117 @@
+package com.esteban.products.services;
+
+import com.esteban.products.entities.Product;
+import com.esteban.products.model.ImportReport;
+import com.esteban.products.model.ProductDto;
+import com.esteban.products.repositories.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = "products.import.batch-size=2")
+public class ProductImportServiceTest {
+
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @BeforeEach
+    public void setUp() {
+        productRepository.deleteAll();
+    }
+
+    @Test
+    public void testImportJson() throws IOException {
+        Long existingId = productService.create(ProductDto.builder().name("Bread").stock(30).price(0.75).build()).getId();
+        productService.get(existingId);
+
+        ImportReport report = productImportService.importJson(toStream("[" +
+                "{\"name\": \"Milk\", \"stock\": 10, \"price\": 1.5}," +
+                "{\"id\": " + existingId + ", \"name\": \"Rye Bread\", \"stock\": 20, \"price\": 0.9}," +
+                "{\"name\": \"Eggs\", \"stock\": 12, \"price\": 2.5}," +
+                "{\"name\": \"\", \"stock\": 1, \"price\": 1}," +
+                "{\"id\": -1, \"name\": \"Ghost\", \"stock\": 1, \"price\": 1}]"));
+
+        assertEquals(5, report.getReceived());
+        assertEquals(2, report.getCreated());
+        assertEquals(1, report.getUpdated());
+        assertEquals(2, report.getFailed());
+        assertEquals(3, productRepository.count(), "Only valid products must be stored");
+        ProductDto updated = productService.get(existingId);
+        assertEquals("Rye Bread", updated.getName(), "Cached product must be refreshed");
+        assertEquals(20, updated.getStock(), "Stock must be the imported one");
+    }
+
+    @Test
+    public void testImportJsonSkipsInvalidElements() throws IOException {
+        ImportReport report = productImportService.importJson(toStream("[" +
+                "{\"name\": \"Milk\", \"stock\": 10, \"price\": 1.5}," +
+                "{\"name\": \"Eggs\", \"stock\": 12, \"price\": 2.5}," +
+                "{\"name\": \"Butter\", \"stock\": \"abc\", \"price\": 3}," +
+                "42," +
+                "[{\"name\": \"Nested\", \"stock\": 1, \"price\": 1}]," +
+                "{\"name\": \"Cheese\", \"stock\": 7, \"price\": 4.25}]"));
+
+        assertEquals(6, report.getReceived());
+        assertEquals(3, report.getCreated(), "Products around the invalid elements must be stored");
+        assertEquals(3, report.getFailed());
+        assertEquals(3, report.getErrors().size(), "Each invalid element must be reported");
+        assertEquals(3, productRepository.count());
+    }
+
+    @Test
+    public void testImportCsv() throws IOException {
+        ImportReport report = productImportService.importCsv(toStream(
+                "name,price,stock\n" +
+                "\"Milk, whole\",1.5,10\n" +
+                "Eggs,2.5,12\n" +
+                "\n" +
+                "Butter,abc,3\n" +
+                "Cheese,4.25,7\n"));
+
+        assertEquals(4, report.getReceived());
+        assertEquals(3, report.getCreated());
+        assertEquals(1, report.getFailed());
+        assertEquals(3, productService.getPage(null, 10).getItems().size(), "Page cache must see the imported products");
+        Product milk = productRepository.findAll().stream()
+                .filter(p -> p.getName().equals("Milk, whole"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(10, milk.getStock());
+    }
+
+    @Test
+    public void testFailedChunkKeepsLedger() throws IOException {
+        Long existingId = productService.create(ProductDto.builder().name("Bread").stock(30).price(0.75).build()).getId();
+        assertEquals(30, stockLedger.getAvailable(existingId));
+
+        ImportReport report = productImportService.importJson(toStream("[" +
+                "{\"id\": " + existingId + ", \"name\": \"Rye Bread\", \"stock\": 20, \"price\": 0.9}," +
+                "{\"name\": \"" + "x".repeat(300) + "\", \"stock\": 1, \"price\": 1}]"));
+
+        assertEquals(2, report.getFailed(), "The whole chunk must fail");
+        assertEquals(30, productRepository.findById(existingId).get().getStock(), "Update must be rolled back");
+        assertEquals(30, stockLedger.getAvailable(existingId), "Ledger must keep the committed stock");
+    }
+
+    private InputStream toStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -1,14 +1,27 @@
 package com.esteban.products.services;
 
 import com.esteban.products.entities.Product;
+import com.esteban.products.entities.StockMovement;
 import com.esteban.products.model.ProductDto;
 import com.esteban.products.repositories.ProductRepository;
+import com.esteban.products.repositories.StockMovementRepository;
+import com.esteban.products.status.StockMovementReason;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
 import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @SpringBootTest
 public class ProductServiceTest {
@@ -23,6 +36,15 @@ public class ProductServiceTest {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private StockJournal stockJournal;
+
+    @Autowired
+    private StockLevels stockLevels;
+
+    @Autowired
+    private StockMovementRepository stockMovementRepository;
+
     @BeforeEach
     public void setUp() {
         productRepository.deleteAll();
@@ -53,6 +75,12 @@ public class ProductServiceTest {
         assertFalse(optProduct.isPresent(), "Product deleted must not exist");
     }
 
+    @Test
+    public void testDeleteUnknown() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> productService.delete(-1L));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode(), "Deleting an unknown product must answer not found");
+    }
+
     @Test
     public void testUpdate() {
         ProductDto productDto = createAnotherProduct();
@@ -69,6 +97,49 @@ public class ProductServiceTest {
         assertEquals(price, optProduct.get().getPrice(), "Price must be the same as passed in update");
     }
 
+    @Test
+    public void testUpdateConflictIsNotRetried() {
+        ProductRepository repository = mock(ProductRepository.class);
+        when(repository.findById(1L)).thenReturn(Optional.of(Product.builder().id(1L).name("Bread").stock(30).price(0.75).build()));
+        when(repository.save(any())).thenThrow(new ObjectOptimisticLockingFailureException(Product.class, 1L));
+        ProductService service = new ProductService(repository, mock(StockService.class), mock(PriceCatalog.class), 10, 60000);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> service.update(1L, createProduct()));
+
+        assertEquals(HttpStatus.CONFLICT, ex.getStatusCode(), "A concurrent update must answer conflict");
+        verify(repository, times(1)).save(any());
+    }
+
+    @Test
+    public void testUpdateJournalsAdjustments() {
+        Long productId = productService.create(createAnotherProduct()).getId();
+
+        productService.update(productId, createProduct());
+
+        stockJournal.flush();
+        List<StockMovement> movements = stockMovementRepository.findByProductIdOrderById(productId);
+        assertEquals(2, movements.size(), "Creation and update must be journaled");
+        assertEquals(StockMovementReason.ADJUSTMENT, movements.get(1).getReason());
+        assertEquals(stock - 30, movements.get(1).getDelta(), "Adjustment must hold the stock difference");
+        assertEquals(stock, stockLevels.get(productId), "Level must follow the last update");
+    }
+
+    @Test
+    public void testGet() {
+        Long productId = productService.create(createAnotherProduct()).getId();
+
+        productService.update(productId, createProduct());
+
+        ProductDto product = productService.get(productId);
+        assertEquals(name, product.getName(), "Name must be the one of the last update");
+        assertEquals(stock, product.getStock(), "Stock must be the one of the last update");
+        assertEquals(1, productService.getPage(null, 10).getItems().size(), "All products must be listed");
+    }
+
+    @Test
+    public void testGetUnknown() {
+        assertThrows(ResponseStatusException.class, () -> productService.get(-1L));
+    }
 
     private ProductDto createProduct() {
         return ProductDto.builder()
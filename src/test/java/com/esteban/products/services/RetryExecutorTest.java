@@ -0,0 +1,71 @@
+package com.esteban.products.services;
+
+import com.esteban.products.entities.Product;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RetryExecutorTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final OrderMetrics orderMetrics = new OrderMetrics(registry, Collections.singleton(42L), 0);
+
+    @Test
+    public void testRetriesConflictsUntilSuccess() {
+        RetryExecutor executor = new RetryExecutor(registry, orderMetrics, 3, 1, 2, 0.1, 20);
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = executor.execute("test", () -> {
+            if(calls.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException(Product.class, 42L);
+            }
+            return "done";
+        });
+
+        assertEquals("done", result);
+        assertEquals(3, calls.get(), "Operation must run until it succeeds");
+        assertEquals(2, registry.counter("products.retry.conflicts", "operation", "test").count());
+        assertEquals(2, registry.counter("products.retry.retries", "operation", "test").count());
+        assertEquals(2, registry.counter("products.stock.conflicts", "product", "42").count(),
+                "Conflicts must be counted per listed product");
+    }
+
+    @Test
+    public void testGivesUpAfterMaxAttempts() {
+        RetryExecutor executor = new RetryExecutor(registry, orderMetrics, 3, 1, 2, 0.1, 20);
+        AtomicInteger calls = new AtomicInteger();
+
+        Assertions.assertThrows(ObjectOptimisticLockingFailureException.class, () -> executor.execute("test", () -> {
+            calls.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException(Product.class, 42L);
+        }));
+
+        assertEquals(3, calls.get(), "Operation must not run more than the maximum attempts");
+        assertEquals(1, registry.counter("products.retry.exhausted", "operation", "test", "reason", "attempts").count());
+    }
+
+    @Test
+    public void testStopsRetryingWhenBudgetIsSpent() {
+        RetryExecutor executor = new RetryExecutor(registry, orderMetrics, 3, 0, 0, 0.0, 2);
+        AtomicInteger calls = new AtomicInteger();
+
+        for(int i = 0; i < 3; i++) {
+            Assertions.assertThrows(ObjectOptimisticLockingFailureException.class, () -> executor.execute("test", () -> {
+                calls.incrementAndGet();
+                throw new ObjectOptimisticLockingFailureException(Product.class, 42L);
+            }));
+        }
+
+        assertEquals(5, calls.get(), "Only the 2 budgeted retries must run");
+        assertEquals(2, registry.counter("products.retry.exhausted", "operation", "test", "reason", "budget").count());
+    }
+
+}
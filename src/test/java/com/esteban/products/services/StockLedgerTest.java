@@ -0,0 +1,94 @@
+package com.esteban.products.services;
+
+import com.esteban.products.entities.Product;
+import com.esteban.products.model.ItemDto;
+import com.esteban.products.model.OrderDto;
+import com.esteban.products.model.ProductDto;
+import com.esteban.products.repositories.ItemRepository;
+import com.esteban.products.repositories.OrderRepository;
+import com.esteban.products.repositories.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mockingDetails;
+
+@SpringBootTest(properties = {
+        "products.stock.flush-delay=3600000",
+        "products.stock.journal.flush-delay=3600000"
+})
+public class StockLedgerTest {
+
+    @MockitoSpyBean
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    private Long productId;
+
+    @BeforeEach
+    public void setUp() {
+        orderRepository.deleteAll();
+        itemRepository.deleteAll();
+        productRepository.deleteAll();
+        productId = productRepository.save(Product.builder().name("Milk").price(1.5).stock(10).build()).getId();
+    }
+
+    @Test
+    public void testUpdateRacingFlushKeepsLedgerAndDatabaseEqual() throws Exception {
+        orderService.create(OrderDto.builder()
+                .items(Collections.singletonList(ItemDto.builder().productId(productId).quantity(2).build()))
+                .build());
+        Answer<?> repository = mockingDetails(productRepository).getMockCreationSettings().getDefaultAnswer();
+        CountDownLatch drained = new CountDownLatch(1);
+        CountDownLatch updated = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            drained.countDown();
+            assertTrue(updated.await(10, TimeUnit.SECONDS), "Update must commit while the flush is running");
+            return repository.answer(invocation);
+        }).when(productRepository).addStock(anyLong(), anyInt());
+        doAnswer(invocation -> {
+            Object saved = repository.answer(invocation);
+            updated.countDown();
+            return saved;
+        }).when(productRepository).save(any(Product.class));
+
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(stockLedger::flush);
+        assertTrue(drained.await(10, TimeUnit.SECONDS), "Flush must drain the reservation");
+        productService.update(productId, ProductDto.builder().name("Milk").price(1.5).stock(20).build());
+        flush.get(10, TimeUnit.SECONDS);
+        stockLedger.flush();
+
+        assertEquals(20, stockLedger.getAvailable(productId), "Ledger must hold the updated stock");
+        assertEquals(20, productRepository.findById(productId).get().getStock(),
+                "Flushed delta must not be added on top of the updated stock");
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.esteban.products.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimingWheelTest {
+
+    private static final long TICK = 1000;
+
+    @Test
+    public void testFiresAfterDeadline() {
+        TimingWheel wheel = new TimingWheel(TICK, 4, 0);
+        wheel.schedule(1L, 5_500);
+
+        assertTrue(wheel.advance(5_999).isEmpty(), "Entry must not fire before the tick following its deadline");
+        assertEquals(Collections.singletonList(1L), wheel.advance(6_000), "Entry must fire on the tick following its deadline");
+        assertEquals(0, wheel.size(), "Wheel must be empty once the entry fired");
+    }
+
+    @Test
+    public void testCascadesFromUpperLevels() {
+        TimingWheel wheel = new TimingWheel(TICK, 4, 0);
+        long thirtyMinutes = 30 * 60 * 1000;
+        wheel.schedule(1L, thirtyMinutes);
+        wheel.schedule(2L, 3 * 24 * 60 * 60 * 1000L);
+        wheel.schedule(3L, 10_000);
+
+        List<Long> fired = new ArrayList<>();
+        for(long now = 0; now <= thirtyMinutes + TICK; now += TICK) {
+            fired.addAll(wheel.advance(now));
+        }
+
+        assertEquals(Arrays.asList(3L, 1L), fired, "Entries must fire in deadline order");
+        assertEquals(1, wheel.size(), "Entry three days ahead must still be pending");
+    }
+
+    @Test
+    public void testFiresPastDeadlinesImmediately() {
+        TimingWheel wheel = new TimingWheel(TICK, 4, 60_000);
+        wheel.schedule(1L, 1_000);
+
+        assertEquals(Collections.singletonList(1L), wheel.advance(60_000), "Overdue entry must fire on next advance");
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.esteban.products.services;
+
+import com.esteban.products.ProductsApplication;
+import com.esteban.products.model.ItemDto;
+import com.esteban.products.model.OrderDto;
+import com.esteban.products.model.ProductDto;
+import com.esteban.products.repositories.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public class WarmStartServiceTest {
+
+    @TempDir
+    private Path dataDir;
+
+    @Test
+    public void testRestartKeepsCatalogAndWarmsCaches() {
+        Long productId;
+        try(ConfigurableApplicationContext context = start()) {
+            productId = context.getBean(ProductService.class).create(ProductDto.builder()
+                    .name("Milk")
+                    .stock(10)
+                    .price(1.5)
+                    .build()).getId();
+        }
+
+        try(ConfigurableApplicationContext context = start()) {
+            assertEquals(1, context.getBean(ProductRepository.class).count(), "Products must survive a restart");
+            assertEquals(10, context.getBean(StockService.class).peek(productId), "Stock ledger must be warmed up");
+            assertNotNull(context.getBean(MeterRegistry.class).find("products.startup.warm").timer(),
+                    "Warm up time must be recorded");
+        }
+    }
+
+    @Test
+    public void testShutdownFlushesReservedStock() {
+        Long productId;
+        try(ConfigurableApplicationContext context = start()) {
+            productId = context.getBean(ProductService.class).create(ProductDto.builder()
+                    .name("Milk")
+                    .stock(10)
+                    .price(1.5)
+                    .build()).getId();
+            context.getBean(OrderService.class).create(OrderDto.builder()
+                    .items(Collections.singletonList(ItemDto.builder().productId(productId).quantity(4).build()))
+                    .build());
+        }
+
+        try(ConfigurableApplicationContext context = start()) {
+            assertEquals(6, context.getBean(ProductRepository.class).findById(productId).get().getStock(),
+                    "Reserved stock must be written back on shutdown");
+        }
+    }
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(ProductsApplication.class)
+                .profiles("file")
+                .web(WebApplicationType.NONE)
+                .run("--products.data-dir=" + dataDir);
+    }
+
+}